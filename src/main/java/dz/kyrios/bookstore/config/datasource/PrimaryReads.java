@@ -0,0 +1,32 @@
+package dz.kyrios.bookstore.config.datasource;
+
+import java.util.function.Supplier;
+
+// Reads that must see every committed write: cache loads, whose result outlives the replica lag, and the reads
+// of authors after their own writes. Read-only transactions whose first statement runs inside call(...) take a
+// primary connection, the physical connection being chosen on that statement. No effect without a replica.
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+
+    private PrimaryReads() {
+    }
+
+    public static <T> T call(Supplier<T> reads) {
+        depth.set(depth.get() + 1);
+        try {
+            return reads.get();
+        } finally {
+            int left = depth.get() - 1;
+            if (left == 0) {
+                depth.remove();
+            } else {
+                depth.set(left);
+            }
+        }
+    }
+
+    public static boolean active() {
+        return depth.get() > 0;
+    }
+}
@@ -0,0 +1,73 @@
+package dz.kyrios.bookstore.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Read replica, enabled with datasource.replica.enabled. The application DataSource is a lazy proxy: the
+// physical connection is taken on the first statement, once the transaction is known to be read-only or not.
+// Read-only transactions (@Transactional(readOnly = true), and the Spring Data repository reads) run on the
+// replica, everything else, and reads while the replica lags, on the primary (spring.datasource).
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(HikariDataSource replicaDataSource,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${datasource.replica.lag-query}") String lagQuery,
+                                               @Value("${datasource.replica.max-lag:5s}") Duration maxLag,
+                                               @Value("${datasource.replica.check-interval:5s}") Duration checkInterval) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, meterRegistry);
+        monitor.start(checkInterval);
+        return monitor;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 HikariDataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        return routingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor);
+    }
+
+    static DataSource routingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(new ReplicaRoutingDataSource(primary, replica, lagMonitor));
+        return dataSource;
+    }
+}
@@ -0,0 +1,84 @@
+package dz.kyrios.bookstore.config.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Measures the replication lag of the replica with lag-query (seconds behind the primary) every check-interval.
+// The replica is usable while the last check succeeded and the lag is at most max-lag, read-only work goes
+// to the primary otherwise.
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate replica;
+
+    private final String lagQuery;
+
+    private final double maxLagSeconds;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-lag-"));
+
+    // seconds, NaN when the replica can not be reached
+    private volatile double lagSeconds = Double.NaN;
+
+    private volatile boolean usable;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replica = new JdbcTemplate(replica);
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        Gauge.builder("bookstore.datasource.replica.lag", this, m -> m.lagSeconds)
+                .description("Replication lag of the read replica, NaN when it can not be reached")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("bookstore.datasource.replica.usable", this, m -> m.usable ? 1 : 0)
+                .description("1 while read-only work is routed to the replica, 0 while it falls back to the primary")
+                .register(meterRegistry);
+    }
+
+    public void start(Duration checkInterval) {
+        check();
+        scheduler.scheduleWithFixedDelay(this::check, checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    public void check() {
+        boolean wasUsable = usable;
+        try {
+            Double lag = replica.queryForObject(lagQuery, Double.class);
+            lagSeconds = lag != null ? lag : 0;
+            usable = lagSeconds <= maxLagSeconds;
+            if (wasUsable && !usable) {
+                log.warn("Replica is {}s behind the primary (max {}s), reads go to the primary", lagSeconds, maxLagSeconds);
+            }
+        } catch (RuntimeException e) {
+            lagSeconds = Double.NaN;
+            usable = false;
+            if (wasUsable) {
+                log.warn("Replica lag check failed, reads go to the primary: {}", e.getMessage());
+            }
+        }
+        if (!wasUsable && usable) {
+            log.info("Replica is {}s behind the primary, read-only work goes to the replica", lagSeconds);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,8 @@
+package dz.kyrios.bookstore.config.exception;
+
+public class ExportBusyException extends RuntimeException {
+
+    public ExportBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package dz.kyrios.bookstore.config.exception;
+
+public class InvalidFileException extends RuntimeException {
+
+    public InvalidFileException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package dz.kyrios.bookstore.config.exception;
+
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package dz.kyrios.bookstore.config.exception;
+
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,30 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+@Configuration
+@Import(SqlStatementConfig.class)
+public class MetricsConfig {
+
+    // first in the chain so the statements run by the security filters are counted too
+    @Bean
+    public FilterRegistrationBean<SqlStatementMetricsFilter> sqlStatementMetricsFilter(
+            SqlStatementCounter sqlStatementCounter,
+            MeterRegistry meterRegistry,
+            @Value("${sql.statement-budget.max-per-request:10}") int maxPerRequest,
+            @Value("${sql.statement-budget.max-repeats:3}") int maxRepeats,
+            @Value("${sql.statement-budget.excluded:/api/v1/books/import}") List<String> excluded) {
+        FilterRegistrationBean<SqlStatementMetricsFilter> registration = new FilterRegistrationBean<>(
+                new SqlStatementMetricsFilter(sqlStatementCounter, meterRegistry, maxPerRequest, maxRepeats, excluded));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
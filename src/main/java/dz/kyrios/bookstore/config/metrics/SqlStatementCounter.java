@@ -0,0 +1,64 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Counts the SQL statements Hibernate prepares on the current thread, registered as the session factory's
+// StatementInspector. SqlStatementMetricsFilter resets it when a request starts and checks it when it ends,
+// tests use it to assert the statements run by a call.
+public class SqlStatementCounter implements StatementInspector {
+
+    // statements kept per thread for the repeat check and the logs, the count goes on past it
+    private static final int MAX_RECORDED = 200;
+
+    private final ThreadLocal<Statements> statements = ThreadLocal.withInitial(Statements::new);
+
+    @Override
+    public String inspect(String sql) {
+        Statements current = statements.get();
+        current.count++;
+        if (current.sql.size() < MAX_RECORDED) {
+            current.sql.add(sql);
+        }
+        return sql;
+    }
+
+    public void reset() {
+        Statements current = statements.get();
+        current.count = 0;
+        current.sql.clear();
+    }
+
+    public long count() {
+        return statements.get().count;
+    }
+
+    // the statements run since the last reset, in order
+    public List<String> statements() {
+        return List.copyOf(statements.get().sql);
+    }
+
+    // the statement run the most times since the last reset, the signature of an N+1 select, null when none ran
+    public Map.Entry<String, Integer> mostRepeated() {
+        Map<String, Integer> runs = new HashMap<>();
+        Map.Entry<String, Integer> most = null;
+        for (String sql : statements.get().sql) {
+            int times = runs.merge(sql, 1, Integer::sum);
+            if (most == null || times > most.getValue()) {
+                most = Map.entry(sql, times);
+            }
+        }
+        return most;
+    }
+
+    private static class Statements {
+
+        private long count;
+
+        private final List<String> sql = new ArrayList<>();
+    }
+}
@@ -0,0 +1,95 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// Records the number of SQL statements each request ran as bookstore.sql.statements, tagged like
+// http.server.requests with the method and the matched uri template.
+// Requests over the statement budget, or running the same statement more than max-repeats times (an N+1
+// select), are logged with their statements and counted in bookstore.sql.budget.exceeded.
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementMetricsFilter.class);
+
+    private final SqlStatementCounter counter;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int maxPerRequest;
+
+    private final int maxRepeats;
+
+    // uri templates allowed to go over the budget, bulk endpoints
+    private final List<String> excluded;
+
+    public SqlStatementMetricsFilter(SqlStatementCounter counter,
+                                     MeterRegistry meterRegistry,
+                                     int maxPerRequest,
+                                     int maxRepeats,
+                                     List<String> excluded) {
+        this.counter = counter;
+        this.meterRegistry = meterRegistry;
+        this.maxPerRequest = maxPerRequest;
+        this.maxRepeats = maxRepeats;
+        this.excluded = excluded;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        counter.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            long count = counter.count();
+            DistributionSummary.builder("bookstore.sql.statements")
+                    .description("SQL statements run per HTTP request")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(count);
+            if (!excluded.contains(uri)) {
+                checkBudget(request.getMethod(), uri, count);
+            }
+        }
+    }
+
+    private void checkBudget(String method, String uri, long count) {
+        String reason = null;
+        if (count > maxPerRequest) {
+            reason = "budget";
+            log.warn("{} {} ran {} SQL statements, budget is {}: {}", method, uri, count, maxPerRequest, counter.statements());
+        }
+        Map.Entry<String, Integer> repeated = counter.mostRepeated();
+        if (repeated != null && repeated.getValue() > maxRepeats) {
+            reason = "repeated";
+            log.warn("{} {} ran the same SQL statement {} times, likely an N+1 select: {}", method, uri, repeated.getValue(), repeated.getKey());
+        }
+        if (reason != null) {
+            Counter.builder("bookstore.sql.budget.exceeded")
+                    .description("Requests over the SQL statement budget or repeating a statement")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .tag("reason", reason)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dz.kyrios.bookstore.config.security;
+
+import dz.kyrios.bookstore.entity.User;
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+// Security principal carrying the user id and pseudonym, so request handling
+// does not have to look the user up again once it is authenticated
+@Getter
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_PSEUDONYM = "pseudonym";
+
+    private final Long id;
+    private final String username;
+    private final String pseudonym;
+    private String password;
+
+    public AuthenticatedUser(Long id, String username, String pseudonym, String password) {
+        this.id = id;
+        this.username = username;
+        this.pseudonym = pseudonym;
+        this.password = password;
+    }
+
+    public static AuthenticatedUser fromEntity(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPseudonym(), user.getPassword());
+    }
+
+    // null when the token was issued without the user claims
+    public static AuthenticatedUser fromClaims(Claims claims) {
+        Long id = claims.get(CLAIM_USER_ID, Long.class);
+        String pseudonym = claims.get(CLAIM_PSEUDONYM, String.class);
+        if (id == null || pseudonym == null) {
+            return null;
+        }
+        return new AuthenticatedUser(id, claims.getSubject(), pseudonym, null);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void eraseCredentials() {
+        this.password = null;
+    }
+}
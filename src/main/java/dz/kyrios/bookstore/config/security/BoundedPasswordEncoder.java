@@ -0,0 +1,103 @@
+package dz.kyrios.bookstore.config.security;
+
+import dz.kyrios.bookstore.config.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Runs the BCrypt work of the delegate on a small dedicated pool instead of the request threads, so a burst
+// of logins uses at most pool-size cores and catalogue requests keep the rest. Callers wait for their hash,
+// once queue-capacity hashes are waiting further ones are rejected at once with PasswordHashingBusyException.
+// upgradeEncoding is only delegated with rehash on, DaoAuthenticationProvider then re-encodes the password
+// of a successful login stored with another cost and saves it through MyUserDetailsService.
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+
+    private final boolean rehash;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate,
+                                  MeterRegistry meterRegistry,
+                                  int poolSize,
+                                  int queueCapacity,
+                                  boolean rehash) {
+        this.delegate = delegate;
+        this.rehash = rehash;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"));
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        this.rejected = Counter.builder("bookstore.password.hash.rejected")
+                .description("Password hashes rejected because the hashing queue was full")
+                .register(meterRegistry);
+        meterRegistry.gauge("bookstore.password.hash.queued", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("bookstore.password.hash.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("bookstore.password.hash")
+                .description("Time spent hashing passwords on the hashing pool, queueing excluded")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return rehash && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Timer timer, Callable<T> hash) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(hash));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException("Too many concurrent sign-ins, retry shortly");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for the password check");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
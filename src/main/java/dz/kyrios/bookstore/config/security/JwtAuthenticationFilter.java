@@ -1,14 +1,15 @@
 package dz.kyrios.bookstore.config.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -23,12 +24,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtTokenProvider jwtTokenProvider;
 
 
-    private UserDetailsService userDetailsService;
+    private MyUserDetailsService userDetailsService;
+
+    // build the principal from the token claims instead of loading the user
+    private final boolean statelessPrincipal;
+
+    // defined by SecurityConfig, absent from the web slices that run without it
+    @Nullable
+    private final RateLimitFilter rateLimitFilter;
 
     //Constructor
-    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider,
+                                   MyUserDetailsService userDetailsService,
+                                   @Value("${security.jwt.stateless-principal:true}") boolean statelessPrincipal,
+                                   @Nullable RateLimitFilter rateLimitFilter) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.userDetailsService = userDetailsService;
+        this.statelessPrincipal = statelessPrincipal;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
 
@@ -42,17 +55,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Get JWT token from HTTP request
         String token = getTokenFromRequest(request);
 
-        // Validate Token
-        if(StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)){
-            // get username from token
-            String username = jwtTokenProvider.getUsername(token);
-
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if(StringUtils.hasText(token)){
+            // validate the token and get its claims, in a single parse
+            Claims claims;
+            try {
+                claims = jwtTokenProvider.parseToken(token);
+            } catch (RuntimeException e) {
+                // forged and expired tokens never reach the rate limit filter, they are counted per address here
+                if (rateLimitFilter != null && !rateLimitFilter.limitUnauthenticated(request, response)) {
+                    return;
+                }
+                throw e;
+            }
+
+            AuthenticatedUser principal = statelessPrincipal ? AuthenticatedUser.fromClaims(claims) : null;
+            if (principal == null) {
+                // tokens issued without user claims, or stateless mode disabled
+                principal = userDetailsService.loadPrincipal(claims.getSubject());
+            }
 
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                    userDetails,
+                    principal,
                     null,
-                    userDetails.getAuthorities()
+                    principal.getAuthorities()
             );
 
             authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -1,15 +1,23 @@
 package dz.kyrios.bookstore.config.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
-import java.security.Key;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenProvider {
@@ -17,44 +25,115 @@ public class JwtTokenProvider {
     private String jwtSecret = "af60addca9ea3e3c099551e1b6576c9966dce0a33de879dd7e160f86dbd872ca236d6e9ee66fb6e30039fe7c345324a10f3d0741b0600fa7a45df4c6691eff4f4209767ed39f51e37717d8feecd5dd14fc34ebe619e6a29ae91d9ffe134cb5718bec0b3680d6ae7fc09e67763fe7c05d05d3ba69f47211163852633755b7f861132b0c98f8d7c1af9152d547408e676867a0a32fb525a4354180f5fb6b2dc23b5faa4155b8db63385f96259a90b6ee0e74a5b90a4f0f4fa96fafc296c64588b5c009b3829ae2e1d69a1cf7569b50a65fa553350495d18816f785f961c970c0a9cb9c8da25cc5e9fa4a3e9527a132d616b232d1ee21c3bf6dc8d9e3376e2e82c0";
     private long jwtExpirationDate = 3600000; //1h = 3600s and 3600*1000 = 3600000 milliseconds
 
+    // decoded once, both are immutable and thread safe
+    private final SecretKey key;
+    private final JwtParser parser;
+
+    // tokens whose signature was already checked, each entry lives until the token expires
+    private final Cache<String, Claims> verifiedTokens;
+
+    // bookstore.jwt.parse by outcome: cached (signature checked earlier), verified, rejected
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+    private final Timer rejectedTimer;
+
+    public JwtTokenProvider(MeterRegistry meterRegistry,
+                            @Value("${security.jwt.verified-token-cache.max-size:10000}") long verifiedTokenCacheSize) {
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parser()
+                .verifyWith(key)
+                .build();
+        this.verifiedTokens = verifiedTokenCacheSize > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(verifiedTokenCacheSize)
+                        .expireAfter(new UntilTokenExpiration())
+                        .build()
+                : null;
+        this.cachedTimer = parseTimer(meterRegistry, "cached");
+        this.verifiedTimer = parseTimer(meterRegistry, "verified");
+        this.rejectedTimer = parseTimer(meterRegistry, "rejected");
+    }
+
+    private static Timer parseTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("bookstore.jwt.parse")
+                .description("JWT signature and expiration checks")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     public String generateToken(Authentication authentication) {
 
         String username = authentication.getName();
         Date currentDate = new Date();
         Date expireDate = new Date(currentDate.getTime() + jwtExpirationDate);
 
-        String token = Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .subject(username)
                 .issuedAt(new Date())
-                .expiration(expireDate)
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .expiration(expireDate);
+        // user claims let JwtAuthenticationFilter build the principal without a database lookup
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            builder.claim(AuthenticatedUser.CLAIM_USER_ID, user.getId())
+                    .claim(AuthenticatedUser.CLAIM_PSEUDONYM, user.getPseudonym());
+        }
+        String token = builder
+                .signWith(key, Jwts.SIG.HS256)
                 .compact();
 
         return token;
     }
 
-    private Key key(){
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    // verify the signature and expiration of a JWT token and return its claims, throws JwtException when invalid
+    public Claims parseToken(String token) {
+        long start = System.nanoTime();
+        Claims claims = verifiedTokens != null ? verifiedTokens.getIfPresent(token) : null;
+        if (claims != null) {
+            cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return claims;
+        }
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (RuntimeException e) {
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (verifiedTokens != null) {
+            verifiedTokens.put(token, claims);
+        }
+        verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return claims;
     }
 
     // extract username from JWT token
     public String getUsername(String token){
-
-        return Jwts.parser()
-                .verifyWith((SecretKey) key())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return parseToken(token).getSubject();
     }
 
     // validate JWT token
     public boolean validateToken(String token){
-        Jwts.parser()
-                .verifyWith((SecretKey) key())
-                .build()
-                .parse(token);
+        parseToken(token);
         return true;
+    }
+
+    private static class UntilTokenExpiration implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
 
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,34 @@
 package dz.kyrios.bookstore.config.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import dz.kyrios.bookstore.entity.User;
 import dz.kyrios.bookstore.repository.UserRepository;
-import org.springframework.security.core.GrantedAuthority;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.time.Duration;
 
 @Service
-public class MyUserDetailsService implements UserDetailsService {
+public class MyUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
-    public MyUserDetailsService(UserRepository userRepository) {
+    // principals of authenticated requests whose token has no user claims, never used for password checks
+    private final Cache<String, AuthenticatedUser> principals;
+
+    public MyUserDetailsService(UserRepository userRepository,
+                                @Value("${security.user-cache.ttl:30s}") Duration userCacheTtl,
+                                @Value("${security.user-cache.max-size:10000}") long userCacheSize) {
         this.userRepository = userRepository;
+        this.principals = Caffeine.newBuilder()
+                .expireAfterWrite(userCacheTtl)
+                .maximumSize(userCacheSize)
+                .build();
     }
 
     @Override
@@ -26,13 +37,26 @@ public class MyUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username) .orElseThrow(() ->
                 new UsernameNotFoundException("User not exists by Username or Email"));
 
-        Set<GrantedAuthority> authorities = new HashSet<>();
+        return AuthenticatedUser.fromEntity(user);
+    }
+
+    // called by DaoAuthenticationProvider after a login whose stored hash needs an upgrade
+    // (security.password.rehash-on-login), newPassword is already encoded
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername()).orElseThrow(() ->
+                new UsernameNotFoundException("User not exists by Username or Email"));
+        user.setPassword(newPassword);
+        return AuthenticatedUser.fromEntity(userRepository.save(user));
+    }
 
-        return new org.springframework.security.core.userdetails.User(
-                username,
-                user.getPassword(),
-                authorities
-        );
+    // same lookup without the password, served from a short lived cache
+    public AuthenticatedUser loadPrincipal(String username) throws UsernameNotFoundException {
+        return principals.get(username, key -> {
+            AuthenticatedUser user = (AuthenticatedUser) loadUserByUsername(key);
+            user.eraseCredentials();
+            return user;
+        });
     }
 }
 
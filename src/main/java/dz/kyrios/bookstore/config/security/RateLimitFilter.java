@@ -0,0 +1,143 @@
+package dz.kyrios.bookstore.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per-client request rate limits, one token bucket per client and route group. Runs after
+// JwtAuthenticationFilter so authenticated requests are limited per user, anonymous ones per remote address
+// (behind a proxy set server.forward-headers-strategy so it is the client address). Requests whose token is
+// rejected never get here, JwtAuthenticationFilter charges them to the remote address with limitUnauthenticated.
+// Buckets live in a bounded Caffeine cache and are dropped once idle for longer than they take to refill,
+// requests over the limit get a 429 with Retry-After and are counted in bookstore.rate.limit.rejected.
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final boolean enabled;
+
+    private final List<RouteGroup> groups = new ArrayList<>();
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimitFilter(MeterRegistry meterRegistry,
+                           boolean enabled,
+                           long maxClients,
+                           int publicCapacity,
+                           double publicRefill,
+                           int booksCapacity,
+                           double booksRefill,
+                           int authCapacity,
+                           double authRefill) {
+        this.enabled = enabled;
+        addGroup(meterRegistry, "public", "/books/**", publicCapacity, publicRefill);
+        addGroup(meterRegistry, "books", "/api/v1/books/**", booksCapacity, booksRefill);
+        addGroup(meterRegistry, "auth", "/api/auth/**", authCapacity, authRefill);
+        long idle = groups.stream()
+                .mapToLong(group -> group.newBucket(0).refillNanos())
+                .max()
+                .orElse(0);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(Math.max(idle, TimeUnit.SECONDS.toNanos(1))))
+                .build();
+        meterRegistry.gauge("bookstore.rate.limit.clients", buckets, cache -> cache.estimatedSize());
+    }
+
+    // a group without capacity or refill is not limited
+    private void addGroup(MeterRegistry meterRegistry, String name, String pattern, int capacity, double refillPerSecond) {
+        if (capacity > 0 && refillPerSecond > 0) {
+            Counter rejected = Counter.builder("bookstore.rate.limit.rejected")
+                    .description("Requests rejected with 429 by the per-client rate limit")
+                    .tag("group", name)
+                    .register(meterRegistry);
+            groups.add(new RouteGroup(name, pattern, capacity, refillPerSecond, rejected));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (tryConsume(request, response, clientKey(request))) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    // for requests turned away before this filter runs, false once the limit is reached and the 429 is written
+    public boolean limitUnauthenticated(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return !enabled || tryConsume(request, response, "ip:" + request.getRemoteAddr());
+    }
+
+    private boolean tryConsume(HttpServletRequest request, HttpServletResponse response, String clientKey) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        RouteGroup group = match(path);
+        if (group != null) {
+            long now = System.nanoTime();
+            TokenBucket bucket = buckets.get(group.name() + ":" + clientKey, key -> group.newBucket(now));
+            long waitNanos = bucket.tryConsume(now);
+            if (waitNanos > 0) {
+                group.rejected().increment();
+                reject(response, waitNanos);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RouteGroup match(String path) {
+        for (RouteGroup group : groups) {
+            if (pathMatcher.match(group.pattern(), path)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return "user:" + user.getId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    // written directly, a sendError would be dispatched to /error through the security chain again
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Too many requests, retry in " + seconds + "s");
+    }
+
+    private record RouteGroup(String name, String pattern, int capacity, double refillPerSecond, Counter rejected) {
+
+        TokenBucket newBucket(long now) {
+            return new TokenBucket(capacity, refillPerSecond, now);
+        }
+    }
+}
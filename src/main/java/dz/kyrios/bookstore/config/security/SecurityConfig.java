@@ -1,6 +1,10 @@
 package dz.kyrios.bookstore.config.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -28,19 +32,27 @@ public class SecurityConfig {
 
     private JwtAuthenticationFilter authenticationFilter;
 
+    // BCrypt on a bounded pool, the default pool size leaves half of the cores to the other requests
     @Bean
-    public static PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+    public static PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                                  @Value("${security.password.bcrypt-cost:10}") int bcryptCost,
+                                                  @Value("${security.password.pool-size:0}") int poolSize,
+                                                  @Value("${security.password.queue-capacity:32}") int queueCapacity,
+                                                  @Value("${security.password.rehash-on-login:false}") boolean rehash){
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptCost), meterRegistry, threads, queueCapacity, rehash);
     }
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity http, RateLimitFilter rateLimitFilter) throws Exception {
 
         http.csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests((authorize) -> {
                     authorize.requestMatchers("/api/auth/**").permitAll();
                     authorize.requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html", "/swagger-resources/**", "/webjars/**").permitAll();
                     authorize.requestMatchers(HttpMethod.GET, "/books/**").permitAll();
+                    // only served on management.server.port, kept off the public network, where Prometheus scrapes them
+                    authorize.requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll();
                     authorize.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll();
                     authorize.anyRequest().authenticated();
                 }).httpBasic(Customizer.withDefaults());
@@ -49,10 +61,36 @@ public class SecurityConfig {
                 .authenticationEntryPoint(authenticationEntryPoint));
 
         http.addFilterBefore(authenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        // after the token check, authenticated clients are limited per user, rejected tokens are counted
+        // by JwtAuthenticationFilter
+        http.addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
+    // static, JwtAuthenticationFilter depends on it and this configuration on JwtAuthenticationFilter
+    @Bean
+    public static RateLimitFilter rateLimitFilter(MeterRegistry meterRegistry,
+                                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                                           @Value("${rate-limit.max-clients:100000}") long maxClients,
+                                           @Value("${rate-limit.public.capacity:100}") int publicCapacity,
+                                           @Value("${rate-limit.public.refill-per-second:50}") double publicRefill,
+                                           @Value("${rate-limit.books.capacity:40}") int booksCapacity,
+                                           @Value("${rate-limit.books.refill-per-second:20}") double booksRefill,
+                                           @Value("${rate-limit.auth.capacity:10}") int authCapacity,
+                                           @Value("${rate-limit.auth.refill-per-second:1}") double authRefill) {
+        return new RateLimitFilter(meterRegistry, enabled, maxClients, publicCapacity, publicRefill,
+                booksCapacity, booksRefill, authCapacity, authRefill);
+    }
+
+    // only runs in the security chain, not registered a second time as a servlet filter
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
         return configuration.getAuthenticationManager();
@@ -0,0 +1,41 @@
+package dz.kyrios.bookstore.config.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket held in a single AtomicLong (the generic cell rate algorithm): the instant, in System.nanoTime
+// units, at which the bucket is full again. Taking a token pushes it one refill interval further, the bucket
+// is empty once it is capacity intervals ahead of now. Updated by compare-and-set, no lock is taken.
+class TokenBucket {
+
+    private final long refillIntervalNanos;
+
+    private final long burstNanos;
+
+    private final AtomicLong fullAt;
+
+    TokenBucket(int capacity, double refillPerSecond, long now) {
+        this.refillIntervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = refillIntervalNanos * capacity;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    // takes a token, returns 0 when one was available, else the nanoseconds until the next one
+    long tryConsume(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + refillIntervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // time for an empty bucket to fill up, an idle bucket older than that is the same as a new one
+    long refillNanos() {
+        return burstNanos;
+    }
+}
@@ -2,6 +2,7 @@ package dz.kyrios.bookstore.controller;
 
 import dz.kyrios.bookstore.dto.AuthResponseDto;
 import dz.kyrios.bookstore.dto.LoginDto;
+import dz.kyrios.bookstore.dto.RefreshTokenDto;
 import dz.kyrios.bookstore.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -27,11 +28,26 @@ public class AuthController {
     @Operation(summary = "Log in", description = "Logs in a user with provided credentials")
     public ResponseEntity<AuthResponseDto> login(@RequestBody LoginDto loginDto){
 
-        String token = authService.login(loginDto);
+        AuthResponseDto authResponseDto = authService.login(loginDto);
 
-        AuthResponseDto authResponseDto = new AuthResponseDto();
-        authResponseDto.setAccessToken(token);
+        return new ResponseEntity<>(authResponseDto, HttpStatus.OK);
+    }
+
+    @PostMapping("/refresh")
+    @Operation(summary = "Refresh", description = "Exchanges a refresh token for a new access token and refresh token, without the password")
+    public ResponseEntity<AuthResponseDto> refresh(@RequestBody RefreshTokenDto refreshTokenDto){
+
+        AuthResponseDto authResponseDto = authService.refresh(refreshTokenDto.getRefreshToken());
 
         return new ResponseEntity<>(authResponseDto, HttpStatus.OK);
     }
+
+    @PostMapping("/logout")
+    @Operation(summary = "Log out", description = "Revokes the refresh token and every token refreshed from the same login")
+    public ResponseEntity<Void> logout(@RequestBody RefreshTokenDto refreshTokenDto){
+
+        authService.logout(refreshTokenDto.getRefreshToken());
+
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -5,15 +5,24 @@ import dz.kyrios.bookstore.config.exception.NotFoundException;
 import dz.kyrios.bookstore.dto.BookRequestDto;
 import dz.kyrios.bookstore.dto.BookResponseDto;
 import dz.kyrios.bookstore.service.BookService;
+import dz.kyrios.bookstore.service.bulk.BookExportService;
+import dz.kyrios.bookstore.service.bulk.BookImportService;
+import dz.kyrios.bookstore.service.bulk.ExportFormat;
+import dz.kyrios.bookstore.service.bulk.ExportScope;
+import dz.kyrios.bookstore.service.pagination.CountMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.Optional;
 
 @RestController
@@ -23,18 +32,33 @@ public class BookController {
 
     private final BookService bookService;
 
-    public BookController(BookService bookService) {
+    private final BookImportService bookImportService;
+
+    private final BookExportService bookExportService;
+
+    public BookController(BookService bookService,
+                          BookImportService bookImportService,
+                          BookExportService bookExportService) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
     }
 
     @GetMapping()
     @Operation(summary = "All Books", description = "Get list of all books of the authenticated author, with pagination and search")
     public ResponseEntity<Object> getAllBooks(@RequestParam Optional<Integer> page,
                                               @RequestParam Optional<Integer> size,
-                                              @RequestParam Optional<String> keyword) {
+                                              @RequestParam Optional<String> keyword,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam Optional<String> count) {
         try {
+            // the presence of a cursor parameter (empty for the first page) selects keyset pagination
+            if (cursor != null) {
+                return new ResponseEntity<>(bookService.getBooksAfterCursorByUser(keyword.orElse(""), cursor, size.orElse(10)), HttpStatus.OK);
+            }
             Pageable pageable = PageRequest.of(page.orElse(0), size.orElse(10));
-            return new ResponseEntity<>(bookService.getBooksWithSearchByUser(keyword.orElse(""), pageable), HttpStatus.OK);
+            CountMode countMode = count.map(CountMode::from).orElse(CountMode.EXACT);
+            return new ResponseEntity<>(bookService.getBooksWithSearchByUser(keyword.orElse(""), pageable, countMode), HttpStatus.OK);
         } catch (NotFoundException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (RuntimeException e) {
@@ -44,6 +68,34 @@ public class BookController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "Export", description = "Stream all books of the authenticated author as NDJSON (default) or CSV")
+    public ResponseEntity<Object> export(@RequestParam Optional<String> format,
+                                         HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = format.map(ExportFormat::from).orElse(ExportFormat.NDJSON);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        }
+        bookExportService.writeAttachment(exportFormat, ExportScope.CURRENT_AUTHOR, response);
+        return null;
+    }
+
+    @GetMapping("/export/all")
+    @Operation(summary = "Export catalogue", description = "Stream the whole catalogue as NDJSON (default) or CSV")
+    public ResponseEntity<Object> exportAll(@RequestParam Optional<String> format,
+                                            HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = format.map(ExportFormat::from).orElse(ExportFormat.NDJSON);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        }
+        bookExportService.writeAttachment(exportFormat, ExportScope.ALL, response);
+        return null;
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "One Book", description = "Get a book detail for the authenticated author")
     public ResponseEntity<Object> getBookById(@PathVariable Long id) {
@@ -83,6 +135,22 @@ public class BookController {
         }
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @Operation(summary = "Bulk import", description = "Publish many books for the authenticated author from a CSV (title,description,price header) or NDJSON body, reports the rows that were rejected")
+    public ResponseEntity<Object> importBooks(HttpServletRequest request) {
+        try {
+            // the body is read as a stream, it is never buffered whole
+            MediaType contentType = MediaType.parseMediaType(request.getContentType());
+            return new ResponseEntity<>(bookImportService.importBooks(request.getInputStream(), contentType), HttpStatus.OK);
+        } catch (NotFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Edit", description = "Edit a book for the authenticated author")
     public ResponseEntity<Object> update(@RequestBody BookRequestDto request,
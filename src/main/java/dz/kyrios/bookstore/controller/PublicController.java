@@ -1,36 +1,96 @@
 package dz.kyrios.bookstore.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dz.kyrios.bookstore.config.exception.NotFoundException;
+import dz.kyrios.bookstore.dto.BookListingState;
 import dz.kyrios.bookstore.dto.BookResponseDto;
 import dz.kyrios.bookstore.service.BookService;
+import dz.kyrios.bookstore.service.cache.PublicListingCache;
+import dz.kyrios.bookstore.service.cache.SerializedListing;
+import dz.kyrios.bookstore.service.pagination.CountMode;
+import dz.kyrios.bookstore.service.storage.CoverFile;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/books")
 @Tag(name = "Public", description = "Public endpoints")
 public class PublicController {
+
+    // Tomcat NIO connector sendfile request attributes
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final BookService bookService;
 
-    public PublicController(BookService bookService) {
+    private final PublicListingCache publicListingCache;
+
+    private final ObjectMapper objectMapper;
+
+    // books change, responses are revalidated with their ETag once max-age is over (right away by default)
+    private final CacheControl booksCacheControl;
+
+    public PublicController(BookService bookService,
+                            PublicListingCache publicListingCache,
+                            ObjectMapper objectMapper,
+                            @Value("${cache.http.books-max-age:0s}") Duration booksMaxAge) {
         this.bookService = bookService;
+        this.publicListingCache = publicListingCache;
+        this.objectMapper = objectMapper;
+        this.booksCacheControl = booksMaxAge.isZero()
+                ? CacheControl.noCache().cachePublic()
+                : CacheControl.maxAge(booksMaxAge).cachePublic();
     }
 
     @GetMapping()
     @Operation(summary = "All Books", description = "Get list of all books, with pagination and search")
     public ResponseEntity<Object> getAllBooks(@RequestParam Optional<Integer> page,
                                               @RequestParam Optional<Integer> size,
-                                              @RequestParam Optional<String> keyword) {
+                                              @RequestParam Optional<String> keyword,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam Optional<String> count,
+                                              ServletWebRequest webRequest) {
         try {
+            CountMode countMode = count.map(CountMode::from).orElse(CountMode.EXACT);
+            if (publicListingCache.covers(keyword.orElse(""), cursor, countMode, page.orElse(0), size.orElse(10))) {
+                return serveListing(publicListingCache.get(page.orElse(0), size.orElse(10)), webRequest);
+            }
+            // the presence of a cursor parameter (empty for the first page) selects keyset pagination
+            if (cursor != null) {
+                return servePage(bookService.getBooksAfterCursor(keyword.orElse(""), cursor, size.orElse(10)), webRequest);
+            }
             Pageable pageable = PageRequest.of(page.orElse(0), size.orElse(10));
-            return new ResponseEntity<>(bookService.getBooksWithSearch(keyword.orElse(""), pageable), HttpStatus.OK);
+            if (countMode != CountMode.EXACT) {
+                return servePage(bookService.getBooksWithSearch(keyword.orElse(""), pageable, countMode), webRequest);
+            }
+            // exact count: the ETag comes from one aggregate over the matched books, which also gives the total,
+            // a 304 skips the page queries
+            BookListingState state = bookService.getListingState(keyword.orElse(""));
+            String eTag = BookListingState.eTag(state);
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).cacheControl(booksCacheControl)
+                    .body(bookService.getBooksWithSearch(keyword.orElse(""), pageable, countMode, state.getCount()));
         } catch (NotFoundException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (RuntimeException e) {
@@ -42,10 +102,55 @@ public class PublicController {
 
     @GetMapping("/{id}")
     @Operation(summary = "One Book", description = "Get a book detail")
-    public ResponseEntity<Object> getBookById(@PathVariable Long id) {
+    public ResponseEntity<Object> getBookById(@PathVariable Long id,
+                                              ServletWebRequest webRequest) {
         try {
             BookResponseDto response = bookService.getBookByIdPublic(id);
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            if (response.getVersion() == null) {
+                return new ResponseEntity<>(response, HttpStatus.OK);
+            }
+            String eTag = "W/\"" + response.getId() + "-" + response.getVersion() + "\"";
+            long lastModified = response.getUpdatedAt() != null ? response.getUpdatedAt().toEpochMilli() : -1;
+            if (webRequest.checkNotModified(eTag, lastModified)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).cacheControl(booksCacheControl).body(response);
+        } catch (NotFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{id}/cover")
+    @Operation(summary = "Cover image", description = "Get the cover image of a book, optionally resized with w, supports conditional and range requests")
+    public ResponseEntity<Object> getCover(@PathVariable Long id,
+                                           @RequestParam Optional<Integer> w,
+                                           HttpServletRequest request,
+                                           ServletWebRequest webRequest) {
+        try {
+            // the cover of a book can change, clients revalidate with the ETag
+            return serveCover(bookService.getCover(id, w.orElse(0)), CacheControl.noCache().cachePublic(), request, webRequest);
+        } catch (NotFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/covers/{hash}")
+    @Operation(summary = "Cover image by content hash", description = "Get a cover image by its SHA-256 (coverImageHash), the response never changes and can be cached forever")
+    public ResponseEntity<Object> getCoverByHash(@PathVariable String hash,
+                                                 @RequestParam Optional<Integer> w,
+                                                 HttpServletRequest request,
+                                                 ServletWebRequest webRequest) {
+        try {
+            CacheControl immutable = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+            return serveCover(bookService.getCoverByHash(hash, w.orElse(0)), immutable, request, webRequest);
         } catch (NotFoundException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (RuntimeException e) {
@@ -54,4 +159,74 @@ public class PublicController {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    // pages read without the aggregate, whose cost would exceed theirs, are validated by a hash of the body:
+    // a 304 saves the transfer, not the queries
+    private ResponseEntity<Object> servePage(Object page, ServletWebRequest webRequest) throws JsonProcessingException {
+        byte[] json = objectMapper.writeValueAsBytes(page);
+        String eTag = "W/\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(eTag)
+                .cacheControl(booksCacheControl)
+                .body(json);
+    }
+
+    // the cached bytes are the body, gzip encoded when the client accepts it
+    private ResponseEntity<Object> serveListing(SerializedListing listing, ServletWebRequest webRequest) {
+        if (webRequest.checkNotModified(listing.getETag())) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(listing.getETag())
+                .cacheControl(booksCacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (listing.getGzip() != null && acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(listing.getGzip());
+        }
+        return response.body(listing.getJson());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private ResponseEntity<Object> serveCover(CoverFile cover,
+                                              CacheControl cacheControl,
+                                              HttpServletRequest request,
+                                              ServletWebRequest webRequest) {
+        if (webRequest.checkNotModified(cover.getETag(), cover.getLastModified().toEpochMilli())) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(cover.getContentType())
+                .eTag(cover.getETag())
+                .lastModified(cover.getLastModified())
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // full GET responses are handed to the connector's sendfile (zero-copy), range requests are
+        // answered by Spring with ResourceRegion bodies
+        if (HttpMethod.GET.matches(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, cover.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, cover.getSize());
+            return response.contentLength(cover.getSize()).build();
+        }
+        return response.body(cover.getResource());
+    }
 }
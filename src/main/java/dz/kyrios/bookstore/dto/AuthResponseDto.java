@@ -6,4 +6,7 @@ import lombok.Data;
 public class AuthResponseDto {
 
     private String accessToken;
-}
\ No newline at end of file
+
+    // single use, exchanged at /api/auth/refresh for a new pair
+    private String refreshToken;
+}
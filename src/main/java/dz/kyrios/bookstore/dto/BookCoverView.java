@@ -0,0 +1,11 @@
+package dz.kyrios.bookstore.dto;
+
+// Cover columns of a book, enough to serve the image without loading the entity
+public interface BookCoverView {
+
+    String getCoverImagePath();
+
+    String getCoverImageHash();
+
+    String getCoverImageContentType();
+}
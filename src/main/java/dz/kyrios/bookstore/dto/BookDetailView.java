@@ -0,0 +1,11 @@
+package dz.kyrios.bookstore.dto;
+
+import java.time.Instant;
+
+// BookView of the single book lookup, with the validators of the public book response
+public interface BookDetailView extends BookView {
+
+    Long getVersion();
+
+    Instant getUpdatedAt();
+}
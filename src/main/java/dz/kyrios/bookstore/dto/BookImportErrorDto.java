@@ -0,0 +1,15 @@
+package dz.kyrios.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportErrorDto {
+
+    // 1-based record number, the CSV header is not counted
+    private long row;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package dz.kyrios.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportResultDto {
+
+    private long rows;
+    private long imported;
+    private long failed;
+    private long durationMillis;
+    private double rowsPerSecond;
+    // the first failures only, see book-import.max-reported-errors
+    private List<BookImportErrorDto> errors;
+}
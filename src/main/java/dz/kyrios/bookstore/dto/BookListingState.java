@@ -0,0 +1,18 @@
+package dz.kyrios.bookstore.dto;
+
+// Aggregate of the books matched by a public listing, the ETag of the exact-count GET /books: adding, removing
+// or editing one of the books changes at least one of the values. Not a Last-Modified, a removal keeps the latest change
+public interface BookListingState {
+
+    long getCount();
+
+    // sum of the book versions, null when no book matches
+    Long getVersions();
+
+    // epoch seconds of the latest change, null when no book matches
+    Long getLastModified();
+
+    static String eTag(BookListingState state) {
+        return "W/\"" + state.getCount() + "-" + state.getVersions() + "-" + state.getLastModified() + "\"";
+    }
+}
@@ -7,6 +7,5 @@ public class BookRequestDto {
 
     private String title;
     private String description;
-    private String coverImagePath;
     private Double price;
 }
@@ -1,9 +1,12 @@
 package dz.kyrios.bookstore.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,6 +16,13 @@ public class BookResponseDto {
     private String title;
     private String description;
     private String coverImagePath;
+    // served forever by GET /books/covers/{hash}
+    private String coverImageHash;
     private Double price;
     private String author;
+    // validators of GET /books/{id}, sent as the ETag and Last-Modified headers, not in the body
+    @JsonIgnore
+    private Long version;
+    @JsonIgnore
+    private Instant updatedAt;
 }
@@ -0,0 +1,20 @@
+package dz.kyrios.bookstore.dto;
+
+// Read-only projection of a book joined with its author's pseudonym, selected straight from the
+// database by the listing and public lookup queries (no entity hydration)
+public interface BookView {
+
+    Long getId();
+
+    String getTitle();
+
+    String getDescription();
+
+    String getCoverImagePath();
+
+    String getCoverImageHash();
+
+    Double getPrice();
+
+    String getAuthor();
+}
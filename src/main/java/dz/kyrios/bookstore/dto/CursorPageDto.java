@@ -0,0 +1,18 @@
+package dz.kyrios.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDto<T> {
+
+    private List<T> content;
+    private int size;
+    // opaque cursor of the following page, null on the last page
+    private String next;
+}
@@ -0,0 +1,9 @@
+package dz.kyrios.bookstore.dto;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenDto {
+
+    private String refreshToken;
+}
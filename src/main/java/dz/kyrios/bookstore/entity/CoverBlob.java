@@ -0,0 +1,30 @@
+package dz.kyrios.bookstore.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A cover file in the content addressed store, shared by every book whose cover has the same content.
+// The file is deleted when the last book referencing it releases it.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "cover_blob")
+public class CoverBlob {
+
+    // hex SHA-256 of the content
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private int refCount;
+}
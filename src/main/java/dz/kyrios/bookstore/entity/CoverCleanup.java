@@ -0,0 +1,37 @@
+package dz.kyrios.bookstore.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Outbox of the cover files to delete, written in the transaction that makes the file unneeded (or before the
+// one that may reference it) and processed by CoverCleanupWorker once due. Files are never deleted in a
+// transaction, and a crash or a rollback leaves the row behind instead of an orphan file.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "cover_cleanup", indexes = @Index(name = "idx_cover_cleanup_due_at", columnList = "dueAt"))
+public class CoverCleanup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // blob content hash, the file is kept when a cover_blob row references it again; null for the covers
+    // stored under their client file name, owned by a single book
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false, length = 1024)
+    private String path;
+
+    @Column(nullable = false)
+    private Instant dueAt;
+
+    @Column(nullable = false)
+    private int attempts;
+}
@@ -0,0 +1,43 @@
+package dz.kyrios.bookstore.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Refresh token handed out at login, only the SHA-256 of the token is stored. A refresh uses the token and
+// issues the next one of the same family; a used token presented again was copied, the family is revoked.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "refresh_token", indexes = {
+        @Index(name = "idx_refresh_token_family", columnList = "family"),
+        @Index(name = "idx_refresh_token_expires_at", columnList = "expiresAt")
+})
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    // shared by the tokens rotated from one login
+    @Column(nullable = false, length = 36)
+    private String family;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", referencedColumnName = "id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    private Instant usedAt;
+
+    private Instant revokedAt;
+}
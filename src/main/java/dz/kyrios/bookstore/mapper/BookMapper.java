@@ -2,6 +2,7 @@ package dz.kyrios.bookstore.mapper;
 
 import dz.kyrios.bookstore.dto.BookRequestDto;
 import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.dto.BookView;
 import dz.kyrios.bookstore.entity.Book;
 
 public interface BookMapper {
@@ -9,4 +10,9 @@ public interface BookMapper {
     Book requestToEntity(BookRequestDto request);
 
     BookResponseDto entityToResponse(Book entity);
+
+    // for callers that already know the author's pseudonym, avoids loading the author
+    BookResponseDto entityToResponse(Book entity, String author);
+
+    BookResponseDto viewToResponse(BookView view);
 }
@@ -1,7 +1,9 @@
 package dz.kyrios.bookstore.mapper;
 
+import dz.kyrios.bookstore.dto.BookDetailView;
 import dz.kyrios.bookstore.dto.BookRequestDto;
 import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.dto.BookView;
 import dz.kyrios.bookstore.entity.Book;
 import org.springframework.stereotype.Component;
 
@@ -18,13 +20,37 @@ public class BookMapperImp implements BookMapper {
 
     @Override
     public BookResponseDto entityToResponse(Book entity) {
+        return entityToResponse(entity, entity.getAuthor().getPseudonym());
+    }
+
+    @Override
+    public BookResponseDto entityToResponse(Book entity, String author) {
         BookResponseDto response = new BookResponseDto();
         response.setId(entity.getId());
         response.setTitle(entity.getTitle());
         response.setDescription(entity.getDescription());
         response.setPrice(entity.getPrice());
-        response.setAuthor(entity.getAuthor().getPseudonym());
+        response.setAuthor(author);
         response.setCoverImagePath(entity.getCoverImagePath());
+        response.setCoverImageHash(entity.getCoverImageHash());
+        response.setVersion(entity.getVersion());
+        response.setUpdatedAt(entity.getUpdatedAt());
         return response;
     }
+
+    @Override
+    public BookResponseDto viewToResponse(BookView view) {
+        // only the single book lookup selects the validators
+        BookDetailView detail = view instanceof BookDetailView d ? d : null;
+        return new BookResponseDto(
+                view.getId(),
+                view.getTitle(),
+                view.getDescription(),
+                view.getCoverImagePath(),
+                view.getCoverImageHash(),
+                view.getPrice(),
+                view.getAuthor(),
+                detail != null ? detail.getVersion() : null,
+                detail != null ? detail.getUpdatedAt() : null);
+    }
 }
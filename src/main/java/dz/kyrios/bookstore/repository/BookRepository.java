@@ -1,20 +1,137 @@
 package dz.kyrios.bookstore.repository;
 
+import dz.kyrios.bookstore.dto.BookCoverView;
+import dz.kyrios.bookstore.dto.BookDetailView;
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.dto.BookView;
 import dz.kyrios.bookstore.entity.Book;
 
-import dz.kyrios.bookstore.entity.User;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// the declared queries only read, their read-only transactions run on the replica when there is one;
+// save and delete keep the read-write transactions of SimpleJpaRepository
 @Repository
+@Transactional(readOnly = true)
 public interface BookRepository extends JpaRepository<Book, Long> {
 
-    @Query("SELECT b FROM Book b WHERE b.title LIKE %?1% OR b.description LIKE %?1%")
-    Page<Book> getBooksWithSearch(String keyword, Pageable pageable);
+    // Read paths select BookView projections with a single join on users, totals are requested separately
+    String VIEW = "SELECT b.id AS id, b.title AS title, b.description AS description, b.coverImagePath AS coverImagePath, " +
+            "b.coverImageHash AS coverImageHash, b.price AS price, a.pseudonym AS author FROM Book b JOIN b.author a ";
+
+    String NATIVE_VIEW = "SELECT b.id AS id, b.title AS title, b.description AS description, b.cover_image_path AS \"coverImagePath\", " +
+            "b.cover_image_hash AS \"coverImageHash\", b.price AS price, u.pseudonym AS author FROM book b JOIN users u ON u.id = b.author_id ";
+
+    String MATCHES = "(LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(b.description) LIKE LOWER(CONCAT('%', :keyword, '%')))";
+
+    String FULL_TEXT_MATCHES = "b.search_vector @@ websearch_to_tsquery('simple', bookstore_unaccent(:keyword))";
+
+    String LISTING_STATE = "SELECT count(b) AS count, sum(b.version) AS versions, " +
+            "extract(epoch from max(b.updatedAt)) AS lastModified FROM Book b ";
+
+    @Query("SELECT b.id AS id, b.title AS title, b.description AS description, b.coverImagePath AS coverImagePath, " +
+            "b.coverImageHash AS coverImageHash, b.price AS price, a.pseudonym AS author, " +
+            "b.version AS version, b.updatedAt AS updatedAt FROM Book b JOIN b.author a WHERE b.id = :id")
+    Optional<BookDetailView> findViewById(Long id);
+
+    @Query("SELECT b.coverImagePath AS coverImagePath, b.coverImageHash AS coverImageHash, " +
+            "b.coverImageContentType AS coverImageContentType FROM Book b WHERE b.id = :id")
+    Optional<BookCoverView> findCoverById(Long id);
+
+    @Query("SELECT b.author.id FROM Book b WHERE b.id = :id")
+    Optional<Long> findAuthorIdById(Long id);
+
+    @Query(VIEW + "ORDER BY b.id")
+    Slice<BookView> findAllViews(Pageable pageable);
+
+    @Query(VIEW + "WHERE a.id = :authorId ORDER BY b.id")
+    Slice<BookView> findViewsByAuthor(Long authorId, Pageable pageable);
+
+    long countByAuthorId(Long authorId);
+
+    // validators of the public listings, a single aggregate over the matched books
+    @Query(LISTING_STATE)
+    BookListingState findListingState();
+
+    @Query(LISTING_STATE + "WHERE " + MATCHES)
+    BookListingState findListingStateWithSearch(String keyword);
+
+    // forward-only exports, must be consumed inside a transaction (PostgreSQL only honours the fetch size
+    // with auto-commit off) and closed, rows are read from the server cursor 1000 at a time
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(VIEW + "ORDER BY b.id")
+    Stream<BookView> streamAllViews();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(VIEW + "WHERE a.id = :authorId ORDER BY b.id")
+    Stream<BookView> streamViewsByAuthor(Long authorId);
+
+    // keyset pagination: seek on the primary key (or the (author_id, id) index) instead of OFFSET
+    @Query(VIEW + "WHERE b.id > :afterId ORDER BY b.id")
+    List<BookView> findViewsAfter(Long afterId, Pageable pageable);
+
+    @Query(VIEW + "WHERE a.id = :authorId AND b.id > :afterId ORDER BY b.id")
+    List<BookView> findViewsByAuthorAfter(Long authorId, Long afterId, Pageable pageable);
+
+    @Query(VIEW + "WHERE " + MATCHES + " ORDER BY b.id")
+    Slice<BookView> getBooksWithSearch(String keyword, Pageable pageable);
+
+    @Query("SELECT count(b) FROM Book b WHERE " + MATCHES)
+    long countBooksWithSearch(String keyword);
+
+    @Query(VIEW + "WHERE a.id = :authorId AND " + MATCHES + " ORDER BY b.id")
+    Slice<BookView> getBooksWithSearchByUser(Long authorId, String keyword, Pageable pageable);
+
+    @Query("SELECT count(b) FROM Book b WHERE b.author.id = :authorId AND " + MATCHES)
+    long countBooksWithSearchByUser(Long authorId, String keyword);
+
+    @Query(VIEW + "WHERE b.id > :afterId AND " + MATCHES + " ORDER BY b.id")
+    List<BookView> getBooksWithSearchAfter(String keyword, Long afterId, Pageable pageable);
+
+    @Query(VIEW + "WHERE a.id = :authorId AND b.id > :afterId AND " + MATCHES + " ORDER BY b.id")
+    List<BookView> getBooksWithSearchByUserAfter(Long authorId, String keyword, Long afterId, Pageable pageable);
+
+    // PostgreSQL only: search_vector, its GIN index and bookstore_unaccent are created by schema-postgresql.sql
+    @Query(value = NATIVE_VIEW + "WHERE " + FULL_TEXT_MATCHES + " " +
+            "ORDER BY ts_rank_cd(b.search_vector, websearch_to_tsquery('simple', bookstore_unaccent(:keyword))) DESC, b.id",
+            nativeQuery = true)
+    Slice<BookView> fullTextSearch(String keyword, Pageable pageable);
+
+    @Query(value = "SELECT count(*) FROM book b WHERE " + FULL_TEXT_MATCHES, nativeQuery = true)
+    long countFullTextSearch(String keyword);
+
+    @Query(value = "SELECT count(*) AS count, sum(b.version) AS versions, " +
+            "CAST(extract(epoch FROM max(b.updated_at)) AS bigint) AS \"lastModified\" FROM book b WHERE " + FULL_TEXT_MATCHES,
+            nativeQuery = true)
+    BookListingState findFullTextListingState(String keyword);
+
+    @Query(value = NATIVE_VIEW + "WHERE b.author_id = :authorId AND " + FULL_TEXT_MATCHES + " " +
+            "ORDER BY ts_rank_cd(b.search_vector, websearch_to_tsquery('simple', bookstore_unaccent(:keyword))) DESC, b.id",
+            nativeQuery = true)
+    Slice<BookView> fullTextSearchByAuthor(Long authorId, String keyword, Pageable pageable);
+
+    @Query(value = "SELECT count(*) FROM book b WHERE b.author_id = :authorId AND " + FULL_TEXT_MATCHES, nativeQuery = true)
+    long countFullTextSearchByAuthor(Long authorId, String keyword);
+
+    @Query(value = NATIVE_VIEW + "WHERE b.id > :afterId AND " + FULL_TEXT_MATCHES + " ORDER BY b.id", nativeQuery = true)
+    List<BookView> fullTextSearchAfter(String keyword, Long afterId, Pageable pageable);
+
+    @Query(value = NATIVE_VIEW + "WHERE b.author_id = :authorId AND b.id > :afterId AND " + FULL_TEXT_MATCHES + " ORDER BY b.id",
+            nativeQuery = true)
+    List<BookView> fullTextSearchByAuthorAfter(Long authorId, String keyword, Long afterId, Pageable pageable);
 
-    @Query("SELECT b FROM Book b WHERE b.author = ?1 and (b.title LIKE %?2% OR b.description LIKE %?2%)")
-    Page<Book> getBooksWithSearchByUser(User author, String keyword, Pageable pageable);
+    // planner row estimate maintained by ANALYZE/autovacuum, -1 when the table was never analyzed
+    @Query(value = "SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = CAST('book' AS regclass)", nativeQuery = true)
+    long estimateRowCount();
 }
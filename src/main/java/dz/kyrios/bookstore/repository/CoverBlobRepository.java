@@ -0,0 +1,51 @@
+package dz.kyrios.bookstore.repository;
+
+import dz.kyrios.bookstore.entity.CoverBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CoverBlobRepository extends JpaRepository<CoverBlob, String> {
+
+    // creates the row without any reference, a concurrent insert of the same hash waits for the other
+    // transaction and then does nothing, the reference is taken by acquire; 1 when the row was created
+    @Modifying
+    @Query(value = "INSERT INTO cover_blob (hash, content_type, size, ref_count) VALUES (:hash, :contentType, :size, 0) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(String hash, String contentType, long size);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CoverBlob c WHERE c.hash = :hash")
+    Optional<CoverBlob> findForUpdate(String hash);
+
+    // the lock the placement, the reference and the deletion of a blob file are serialized on, held until the
+    // transaction ends; the row is created when missing, again when a release deletes it before it is locked
+    default CoverBlob lock(String hash, String contentType, long size) {
+        while (true) {
+            insertIfAbsent(hash, contentType, size);
+            Optional<CoverBlob> blob = findForUpdate(hash);
+            if (blob.isPresent()) {
+                return blob.get();
+            }
+        }
+    }
+
+    @Modifying
+    @Query("UPDATE CoverBlob c SET c.refCount = c.refCount + 1 WHERE c.hash = :hash")
+    int acquire(String hash);
+
+    @Modifying
+    @Query("UPDATE CoverBlob c SET c.refCount = c.refCount - 1 WHERE c.hash = :hash AND c.refCount > 0")
+    int release(String hash);
+
+    // 1 when the blob was unreferenced and its row removed, its file can then be deleted
+    @Modifying
+    @Query("DELETE FROM CoverBlob c WHERE c.hash = :hash AND c.refCount = 0")
+    int deleteIfUnreferenced(String hash);
+}
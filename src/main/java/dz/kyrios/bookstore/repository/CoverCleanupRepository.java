@@ -0,0 +1,28 @@
+package dz.kyrios.bookstore.repository;
+
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface CoverCleanupRepository extends JpaRepository<CoverCleanup, Long> {
+
+    @Query("SELECT c FROM CoverCleanup c WHERE c.dueAt <= :now ORDER BY c.dueAt")
+    List<CoverCleanup> findDue(Instant now, Pageable pageable);
+
+    // an upload of this content staged and not yet referenced or expired, its file must stay
+    @Query("SELECT CASE WHEN COUNT(c) > 0 THEN true ELSE false END FROM CoverCleanup c " +
+            "WHERE c.hash = :hash AND c.id <> :excludedId AND c.dueAt > :now")
+    boolean existsPending(String hash, Long excludedId, Instant now);
+
+    // 0 when the row was processed by CoverCleanupWorker meanwhile
+    @Modifying
+    @Query("DELETE FROM CoverCleanup c WHERE c.id = :id")
+    int deleteStaged(Long id);
+}
@@ -0,0 +1,31 @@
+package dz.kyrios.bookstore.repository;
+
+import dz.kyrios.bookstore.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    // with its user, the access token is built from it
+    @Query("SELECT r FROM RefreshToken r JOIN FETCH r.user WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // 1 for the single caller that gets to use the token, 0 when it was used or revoked meanwhile
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.usedAt = :now WHERE r.id = :id AND r.usedAt IS NULL AND r.revokedAt IS NULL")
+    int markUsed(Long id, Instant now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revokedAt = :now WHERE r.family = :family AND r.revokedAt IS NULL")
+    int revokeFamily(String family, Instant now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt < :now")
+    int deleteExpired(Instant now);
+}
@@ -1,12 +1,16 @@
 package dz.kyrios.bookstore.service;
 
+import dz.kyrios.bookstore.config.exception.NotFoundException;
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
 import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.dto.AuthResponseDto;
 import dz.kyrios.bookstore.dto.LoginDto;
+import dz.kyrios.bookstore.repository.UserRepository;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -16,28 +20,70 @@ public class AuthService {
 
     private final JwtTokenProvider jwtTokenProvider;
 
-    public AuthService(AuthenticationManager authenticationManager, JwtTokenProvider jwtTokenProvider) {
+    private final UserRepository userRepository;
+
+    private final RefreshTokenService refreshTokenService;
+
+    public AuthService(AuthenticationManager authenticationManager,
+                       JwtTokenProvider jwtTokenProvider,
+                       UserRepository userRepository,
+                       RefreshTokenService refreshTokenService) {
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.userRepository = userRepository;
+        this.refreshTokenService = refreshTokenService;
     }
 
-    public String login(LoginDto loginDto) {
+    public AuthResponseDto login(LoginDto loginDto) {
         Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
                 loginDto.getUsername(),
                 loginDto.getPassword()
         ));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        return jwtTokenProvider.generateToken(authentication);
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+        return response(jwtTokenProvider.generateToken(authentication), refreshTokenService.issue(user.getId()));
+    }
+
+    // new access token and refresh token for a refresh token, no password check
+    public AuthResponseDto refresh(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        AuthenticatedUser user = rotation.user();
+        String accessToken = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        return response(accessToken, rotation.refreshToken());
+    }
+
+    public void logout(String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
+    }
+
+    private static AuthResponseDto response(String accessToken, String refreshToken) {
+        AuthResponseDto authResponseDto = new AuthResponseDto();
+        authResponseDto.setAccessToken(accessToken);
+        authResponseDto.setRefreshToken(refreshToken);
+        return authResponseDto;
     }
 
     public String getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated()) {
-            User userDetails = (User) authentication.getPrincipal();
+            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
             return userDetails.getUsername();
         }
 
         return null;
     }
-}
\ No newline at end of file
+
+    // id and pseudonym of the caller, taken from the principal built by JwtAuthenticationFilter
+    public AuthenticatedUser getCurrentAuthenticatedUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user;
+        }
+        // other principals (http basic, tests) only carry the username
+        return userRepository.findByUsername(getCurrentUser())
+                .map(AuthenticatedUser::fromEntity)
+                .orElseThrow(() -> new NotFoundException("Current User not found"));
+    }
+}
@@ -1,36 +1,56 @@
 package dz.kyrios.bookstore.service;
 
+import dz.kyrios.bookstore.config.datasource.PrimaryReads;
 import dz.kyrios.bookstore.config.exception.AuthorizationDeniedException;
 import dz.kyrios.bookstore.config.exception.NotFoundException;
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
 import dz.kyrios.bookstore.dto.BookRequestDto;
+import dz.kyrios.bookstore.dto.BookCoverView;
+import dz.kyrios.bookstore.dto.BookListingState;
 import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.dto.BookView;
+import dz.kyrios.bookstore.dto.CursorPageDto;
 import dz.kyrios.bookstore.entity.Book;
-import dz.kyrios.bookstore.entity.User;
 import dz.kyrios.bookstore.mapper.BookMapper;
 import dz.kyrios.bookstore.repository.BookRepository;
 import dz.kyrios.bookstore.repository.UserRepository;
+import dz.kyrios.bookstore.service.cache.PublicBookCache;
+import dz.kyrios.bookstore.service.cache.QueryCoalescer;
+import dz.kyrios.bookstore.service.event.BookChangedEvent;
+import dz.kyrios.bookstore.service.event.CoverStoredEvent;
+import dz.kyrios.bookstore.service.pagination.BookCountCache;
+import dz.kyrios.bookstore.service.pagination.BookCursor;
+import dz.kyrios.bookstore.service.pagination.CountMode;
+import dz.kyrios.bookstore.service.search.BookSearchEngine;
+import dz.kyrios.bookstore.service.storage.CoverFile;
+import dz.kyrios.bookstore.service.storage.CoverStorageService;
+import dz.kyrios.bookstore.service.storage.CoverThumbnailService;
+import dz.kyrios.bookstore.service.storage.StoredCover;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
+@Timed(value = "bookstore.book.service", description = "BookService calls, tagged with the method")
 public class BookService {
 
-    @Value("${file.upload-dir}")
-    private String uploadDir;
-
     private final BookRepository bookRepository;
 
     private final BookMapper bookMapper;
@@ -39,135 +59,326 @@ public class BookService {
 
     private final UserRepository userRepository;
 
+    private final BookSearchEngine bookSearchEngine;
+
+    private final BookCountCache bookCountCache;
+
+    private final PublicBookCache publicBookCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final CoverStorageService coverStorageService;
+
+    private final CoverThumbnailService coverThumbnailService;
+
+    private final QueryCoalescer queryCoalescer;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final int maxCursorPageSize;
+
     public BookService(BookRepository bookRepository,
                        BookMapper bookMapper,
                        AuthService authService,
-                       UserRepository userRepository) {
+                       UserRepository userRepository,
+                       BookSearchEngine bookSearchEngine,
+                       BookCountCache bookCountCache,
+                       PublicBookCache publicBookCache,
+                       ApplicationEventPublisher eventPublisher,
+                       CoverStorageService coverStorageService,
+                       CoverThumbnailService coverThumbnailService,
+                       QueryCoalescer queryCoalescer,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${pagination.cursor.max-size:100}") int maxCursorPageSize) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
         this.authService = authService;
         this.userRepository = userRepository;
+        this.bookSearchEngine = bookSearchEngine;
+        this.bookCountCache = bookCountCache;
+        this.publicBookCache = publicBookCache;
+        this.eventPublisher = eventPublisher;
+        this.coverStorageService = coverStorageService;
+        this.coverThumbnailService = coverThumbnailService;
+        this.queryCoalescer = queryCoalescer;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxCursorPageSize = maxCursorPageSize;
     }
 
-    public Page<BookResponseDto> getBooksWithSearch(String keyword, Pageable pageable) {
-        List<BookResponseDto> responseList;
-        Page<Book> page;
-        page = bookRepository.getBooksWithSearch(keyword, pageable);
+    // validators of GET /books for a keyword, one aggregate query over the matched books.
+    // The listing queries are coalesced, without a transaction around the wait: waiting callers hold no
+    // connection, the leader runs all the queries of the call in one read-only transaction
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public BookListingState getListingState(String keyword) {
+        String term = StringUtils.hasText(keyword) ? keyword.trim() : "";
+        return queryCoalescer.execute("state:" + term, () -> readOnlyTransaction.execute(status -> term.isEmpty()
+                ? bookRepository.findListingState()
+                : bookSearchEngine.listingState(term)));
+    }
 
-        responseList = page.getContent().stream()
-                .map(bookMapper::entityToResponse)
-                .collect(Collectors.toList());
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Slice<BookResponseDto> getBooksWithSearch(String keyword, Pageable pageable, CountMode countMode) {
+        return getBooksWithSearch(keyword, pageable, countMode, null);
+    }
 
-        return new PageImpl<>(responseList, pageable, page.getTotalElements());
+    // knownTotal, the count of a listing state read just before, replaces the exact count query
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Slice<BookResponseDto> getBooksWithSearch(String keyword, Pageable pageable, CountMode countMode, Long knownTotal) {
+        String key = "public:" + keyword + ":" + pageable + ":" + countMode + ":" + knownTotal;
+        return queryCoalescer.execute(key, () -> readOnlyTransaction.execute(status -> searchBooks(keyword, pageable, countMode, knownTotal)));
     }
 
-    public Page<BookResponseDto> getBooksWithSearchByUser(String keyword, Pageable pageable) {
-        User currentUser = userRepository.findByUsername(authService.getCurrentUser())
-                .orElseThrow(() -> new NotFoundException("Current User not found"));
-        List<BookResponseDto> responseList;
-        Page<Book> page;
-        page = bookRepository.getBooksWithSearchByUser(currentUser, keyword, pageable);
+    private Slice<BookResponseDto> searchBooks(String keyword, Pageable pageable, CountMode countMode, Long knownTotal) {
+        Slice<BookView> slice;
+        LongSupplier total;
+        if (StringUtils.hasText(keyword)) {
+            String term = keyword.trim();
+            slice = bookSearchEngine.search(term, pageable);
+            total = () -> bookSearchEngine.count(term);
+            if (countMode == CountMode.ESTIMATED) {
+                LongSupplier exact = total;
+                total = () -> bookCountCache.get("public:" + term, exact);
+            }
+        } else {
+            slice = bookRepository.findAllViews(pageable);
+            // the whole catalogue has a free estimate in the planner statistics
+            total = countMode == CountMode.ESTIMATED ? bookSearchEngine::estimateCatalogueSize : bookRepository::count;
+        }
+        if (knownTotal != null && countMode == CountMode.EXACT) {
+            total = knownTotal::longValue;
+        }
+        return toResponse(slice, pageable, countMode, total);
+    }
+
+    // the reads of an author, right after their own writes, run on the primary. Not coalesced: a query
+    // started before the write would hide it from its author
+    @Transactional(readOnly = true)
+    public Slice<BookResponseDto> getBooksWithSearchByUser(String keyword, Pageable pageable, CountMode countMode) {
+        return PrimaryReads.call(() -> searchBooksByUser(authService.getCurrentAuthenticatedUser(), keyword, pageable, countMode));
+    }
 
-        responseList = page.getContent().stream()
-                .map(bookMapper::entityToResponse)
+    private Slice<BookResponseDto> searchBooksByUser(AuthenticatedUser currentUser, String keyword, Pageable pageable, CountMode countMode) {
+        String scope = "author:" + currentUser.getId() + ":";
+        Slice<BookView> slice;
+        LongSupplier total;
+        if (StringUtils.hasText(keyword)) {
+            String term = keyword.trim();
+            slice = bookSearchEngine.searchByAuthor(currentUser.getId(), term, pageable);
+            total = () -> bookSearchEngine.countByAuthor(currentUser.getId(), term);
+            if (countMode == CountMode.ESTIMATED) {
+                LongSupplier exact = total;
+                total = () -> bookCountCache.get(scope + term, exact);
+            }
+        } else {
+            slice = bookRepository.findViewsByAuthor(currentUser.getId(), pageable);
+            total = () -> bookRepository.countByAuthorId(currentUser.getId());
+            if (countMode == CountMode.ESTIMATED) {
+                LongSupplier exact = total;
+                total = () -> bookCountCache.get(scope, exact);
+            }
+        }
+        return toResponse(slice, pageable, countMode, total);
+    }
+
+    private Slice<BookResponseDto> toResponse(Slice<BookView> slice, Pageable pageable, CountMode countMode, LongSupplier total) {
+        List<BookResponseDto> responseList = slice.getContent().stream()
+                .map(bookMapper::viewToResponse)
                 .collect(Collectors.toList());
 
-        return new PageImpl<>(responseList, pageable, page.getTotalElements());
+        if (countMode == CountMode.NONE) {
+            return new SliceImpl<>(responseList, pageable, slice.hasNext());
+        }
+        if (countMode == CountMode.ESTIMATED) {
+            // an estimate must never hide a page the slice knows exists
+            long lowerBound = pageable.getOffset() + responseList.size() + (slice.hasNext() ? 1 : 0);
+            return new PageImpl<>(responseList, pageable, Math.max(total.getAsLong(), lowerBound));
+        }
+        // skips the count when the page alone gives the total (first or last page)
+        return PageableExecutionUtils.getPage(responseList, pageable, total);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookResponseDto> getBooksAfterCursor(String keyword, String cursor, int size) {
+        BookCursor.checkSize(size, maxCursorPageSize);
+        long afterId = BookCursor.decode(cursor);
+        List<BookView> books;
+        // one extra row tells whether a next page exists, without any count query
+        if (StringUtils.hasText(keyword)) {
+            books = bookSearchEngine.searchAfter(keyword.trim(), afterId, size + 1);
+        } else {
+            books = bookRepository.findViewsAfter(afterId, PageRequest.ofSize(size + 1));
+        }
+        return toCursorPage(books, size);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookResponseDto> getBooksAfterCursorByUser(String keyword, String cursor, int size) {
+        return PrimaryReads.call(() -> booksAfterCursorByUser(keyword, cursor, size));
+    }
+
+    private CursorPageDto<BookResponseDto> booksAfterCursorByUser(String keyword, String cursor, int size) {
+        BookCursor.checkSize(size, maxCursorPageSize);
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
+        long afterId = BookCursor.decode(cursor);
+        List<BookView> books;
+        if (StringUtils.hasText(keyword)) {
+            books = bookSearchEngine.searchByAuthorAfter(currentUser.getId(), keyword.trim(), afterId, size + 1);
+        } else {
+            books = bookRepository.findViewsByAuthorAfter(currentUser.getId(), afterId, PageRequest.ofSize(size + 1));
+        }
+        return toCursorPage(books, size);
     }
 
+    private CursorPageDto<BookResponseDto> toCursorPage(List<BookView> books, int size) {
+        boolean hasNext = books.size() > size;
+        List<BookResponseDto> responseList = books.stream()
+                .limit(size)
+                .map(bookMapper::viewToResponse)
+                .collect(Collectors.toList());
+        String next = hasNext ? BookCursor.encode(responseList.get(responseList.size() - 1).getId()) : null;
+        return new CursorPageDto<>(responseList, responseList.size(), next);
+    }
+
+    // cache hits open no transaction
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public BookResponseDto getBookByIdPublic(Long id) {
-        Book book = bookRepository.findById(id)
+        BookResponseDto book = publicBookCache.get(id);
+        if (book == null) {
+            throw new NotFoundException(id, "Book not found with id: ");
+        }
+        return book;
+    }
+
+    // width 0 serves the original, otherwise the closest generated variant.
+    // No transaction around the file work, the lookup runs in its own read-only one
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public CoverFile getCover(Long id, int width) {
+        BookCoverView book = bookRepository.findCoverById(id)
                 .orElseThrow(() -> new NotFoundException(id, "Book not found with id: "));
-        return bookMapper.entityToResponse(book);
+        CoverFile cover = book.getCoverImagePath() == null ? null
+                : coverStorageService.open(book.getCoverImagePath(), book.getCoverImageHash(), book.getCoverImageContentType());
+        if (cover == null) {
+            throw new NotFoundException(id, "Cover image not found for book with id: ");
+        }
+        return width > 0 ? coverThumbnailService.thumbnail(cover, width) : cover;
     }
 
+    // covers by content hash never change, whatever book they belong to
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public CoverFile getCoverByHash(String hash, int width) {
+        CoverFile cover = coverStorageService.openBlob(hash);
+        if (cover == null) {
+            throw new NotFoundException("Cover image not found: " + hash);
+        }
+        return width > 0 ? coverThumbnailService.thumbnail(cover, width) : cover;
+    }
+
+    @Transactional(readOnly = true)
     public BookResponseDto getBookById(Long id) {
-        User currentUser = userRepository.findByUsername(authService.getCurrentUser())
-                .orElseThrow(() -> new NotFoundException("Current User not found"));
+        return PrimaryReads.call(() -> bookById(id));
+    }
+
+    private BookResponseDto bookById(Long id) {
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException(id, "Book not found with id: "));
-        if (currentUser.equals(book.getAuthor())) {
-            return bookMapper.entityToResponse(book);
+        if (isAuthor(currentUser, book)) {
+            return bookMapper.entityToResponse(book, currentUser.getPseudonym());
         } else {
             throw new AuthorizationDeniedException("You are not authorized to access this resource.");
         }
     }
 
+    // the cover is staged before the transaction, which then only takes a reference on it
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BookResponseDto saveBook(BookRequestDto request, MultipartFile file) {
-        User currentUser = userRepository.findByUsername(authService.getCurrentUser())
-                .orElseThrow(() -> new NotFoundException("Current User not found"));
-        Book bookToCreate = bookMapper.requestToEntity(request);
-        bookToCreate.setAuthor(currentUser);
-        if (!file.isEmpty()) {
-            Path filePath = Paths.get(uploadDir, file.getOriginalFilename());
-            try {
-                Files.createDirectories(filePath.getParent());
-                Files.write(filePath, file.getBytes());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
+        StoredCover cover = file.isEmpty() ? null : coverStorageService.stage(file);
+        Book created = transactionTemplate.execute(status -> {
+            Book bookToCreate = bookMapper.requestToEntity(request);
+            bookToCreate.setAuthor(userRepository.getReferenceById(currentUser.getId()));
+            if (cover != null) {
+                coverStorageService.reference(cover);
+                bookToCreate.setCoverImagePath(cover.getPath().toString());
+                bookToCreate.setCoverImageHash(cover.getHash());
+                bookToCreate.setCoverImageContentType(cover.getContentType());
+                eventPublisher.publishEvent(new CoverStoredEvent(cover));
             }
-            bookToCreate.setCoverImagePath(filePath.toString());
-        }
-        Book created = bookRepository.save(bookToCreate);
-        return bookMapper.entityToResponse(created);
+            Book saved = bookRepository.save(bookToCreate);
+            eventPublisher.publishEvent(new BookChangedEvent(saved.getId()));
+            return saved;
+        });
+        return bookMapper.entityToResponse(created, currentUser.getPseudonym());
     }
 
     public BookResponseDto updateBook(BookRequestDto request, Long id) {
-        User currentUser = userRepository.findByUsername(authService.getCurrentUser())
-                .orElseThrow(() -> new NotFoundException("Current User not found"));
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
         Book entity = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException(id, "Book not found with id: "));
 
-        if (currentUser.equals(entity.getAuthor())) {
+        if (isAuthor(currentUser, entity)) {
             entity.setTitle(request.getTitle());
             entity.setDescription(request.getDescription());
             entity.setPrice(request.getPrice());
-            entity.setCoverImagePath(request.getCoverImagePath());
+            eventPublisher.publishEvent(new BookChangedEvent(id));
 
-            return bookMapper.entityToResponse(entity);
+            return bookMapper.entityToResponse(entity, currentUser.getPseudonym());
         } else {
             throw new AuthorizationDeniedException("You are not authorized to edit this resource.");
         }
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BookResponseDto updateCoverImage(MultipartFile file, Long id) {
-        User currentUser = userRepository.findByUsername(authService.getCurrentUser())
-                .orElseThrow(() -> new NotFoundException("Current User not found"));
-        Book entity = bookRepository.findById(id)
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
+        // checked before the upload is hashed and written to disk, and again in the transaction,
+        // on the primary: the author may have just created the book
+        Long authorId = PrimaryReads.call(() -> bookRepository.findAuthorIdById(id))
                 .orElseThrow(() -> new NotFoundException(id, "Book not found with id: "));
-
-        if (currentUser.equals(entity.getAuthor())) {
-            Path oldPath = Paths.get(entity.getCoverImagePath());
-            Path newPath = Paths.get(uploadDir, file.getOriginalFilename());
-            try {
-                Files.delete(oldPath);
-                Files.createDirectories(newPath.getParent());
-                Files.write(newPath, file.getBytes());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-
-            return bookMapper.entityToResponse(entity);
-        } else {
+        if (!currentUser.getId().equals(authorId)) {
             throw new AuthorizationDeniedException("You are not authorized to edit this resource.");
         }
+        StoredCover cover = coverStorageService.stage(file);
+        Book updated = transactionTemplate.execute(status -> {
+            Book entity = bookRepository.findById(id)
+                    .orElseThrow(() -> new NotFoundException(id, "Book not found with id: "));
+            if (!isAuthor(currentUser, entity)) {
+                throw new AuthorizationDeniedException("You are not authorized to edit this resource.");
+            }
+            String oldHash = entity.getCoverImageHash();
+            String oldPath = entity.getCoverImagePath();
+            coverStorageService.reference(cover);
+            entity.setCoverImagePath(cover.getPath().toString());
+            entity.setCoverImageHash(cover.getHash());
+            entity.setCoverImageContentType(cover.getContentType());
+            // released once the new reference is taken, re-uploading the same image keeps its blob
+            coverStorageService.release(oldHash, oldPath);
+            eventPublisher.publishEvent(new CoverStoredEvent(cover));
+            eventPublisher.publishEvent(new BookChangedEvent(id));
+            return entity;
+        });
+        return bookMapper.entityToResponse(updated, currentUser.getPseudonym());
     }
 
     public void deleteBook(Long id) {
-        User currentUser = userRepository.findByUsername(authService.getCurrentUser())
-                .orElseThrow(() -> new NotFoundException("Current User not found"));
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
         Book entity = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException(id, "Book not found with id: "));
-        if (currentUser.equals(entity.getAuthor())) {
-            Path path = Paths.get(entity.getCoverImagePath());
-            try {
-                Files.delete(path);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+        if (isAuthor(currentUser, entity)) {
+            coverStorageService.release(entity.getCoverImageHash(), entity.getCoverImagePath());
             bookRepository.delete(entity);
+            eventPublisher.publishEvent(new BookChangedEvent(id));
         } else {
             throw new AuthorizationDeniedException("You are not authorized to delete this resource.");
         }
     }
+
+    // compares ids only, the lazy author proxy is not initialized
+    private boolean isAuthor(AuthenticatedUser user, Book book) {
+        return user.getId().equals(book.getAuthor().getId());
+    }
 }
@@ -0,0 +1,142 @@
+package dz.kyrios.bookstore.service;
+
+import dz.kyrios.bookstore.config.exception.InvalidRefreshTokenException;
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.entity.RefreshToken;
+import dz.kyrios.bookstore.repository.RefreshTokenRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// Rotating refresh tokens: random 256 bit tokens, stored as their SHA-256, each usable once. Refreshing
+// issues the next token of the family; presenting a token that was already used revokes the whole family,
+// both the thief and the legitimate client then have to log in again.
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    private final UserRepository userRepository;
+
+    private final Duration ttl;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final MeterRegistry meterRegistry;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               UserRepository userRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${security.refresh-token.ttl:30d}") Duration ttl) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+    }
+
+    public record Rotation(AuthenticatedUser user, String refreshToken) {
+    }
+
+    // first token of a new family, at login
+    @Transactional
+    public String issue(Long userId) {
+        String token = save(UUID.randomUUID().toString(), userId);
+        count("issued");
+        return token;
+    }
+
+    // uses the token and returns its user with the next token of the family;
+    // the revocation of a reused family is committed although the call fails
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public Rotation rotate(String token) {
+        Instant now = Instant.now();
+        RefreshToken current = find(token);
+        if (current.getRevokedAt() != null || !current.getExpiresAt().isAfter(now)) {
+            count("rejected");
+            throw new InvalidRefreshTokenException("Refresh token expired or revoked");
+        }
+        if (refreshTokenRepository.markUsed(current.getId(), now) == 0) {
+            refreshTokenRepository.revokeFamily(current.getFamily(), now);
+            log.warn("Refresh token reused for user {}, family {} revoked", current.getUser().getId(), current.getFamily());
+            count("reused");
+            throw new InvalidRefreshTokenException("Refresh token already used");
+        }
+        AuthenticatedUser user = AuthenticatedUser.fromEntity(current.getUser());
+        user.eraseCredentials();
+        String next = save(current.getFamily(), user.getId());
+        count("rotated");
+        return new Rotation(user, next);
+    }
+
+    // logout, the token and every token rotated from the same login stop working
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.revokeFamily(find(token).getFamily(), Instant.now());
+        count("revoked");
+    }
+
+    // expired tokens are rejected anyway, used ones are kept until then for the reuse detection
+    @Scheduled(fixedDelayString = "${security.refresh-token.purge-interval:PT6H}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired refresh tokens", deleted);
+        }
+    }
+
+    private RefreshToken find(String token) {
+        if (token == null || token.isBlank()) {
+            count("rejected");
+            throw new InvalidRefreshTokenException("Refresh token missing");
+        }
+        return refreshTokenRepository.findByTokenHash(hash(token)).orElseThrow(() -> {
+            count("rejected");
+            return new InvalidRefreshTokenException("Refresh token not found");
+        });
+    }
+
+    private String save(String family, Long userId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(new RefreshToken(null, hash(token), family,
+                userRepository.getReferenceById(userId), Instant.now().plus(ttl), null, null));
+        return token;
+    }
+
+    private void count(String outcome) {
+        Counter.builder("bookstore.refresh.token")
+                .description("Refresh token operations by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
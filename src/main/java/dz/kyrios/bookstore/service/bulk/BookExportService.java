@@ -0,0 +1,142 @@
+package dz.kyrios.bookstore.service.bulk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import dz.kyrios.bookstore.config.exception.ExportBusyException;
+import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.dto.BookView;
+import dz.kyrios.bookstore.mapper.BookMapper;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.service.AuthService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+// Streams the catalogue, or the books of one author, straight from a database cursor to the response.
+// Rows are read as BookView projections, never as managed entities, so nothing accumulates in the
+// persistence context and memory stays flat whatever the number of books. An export holds a database
+// connection until its last row reaches the client, so only book-export.max-concurrent run at once,
+// the others are rejected before taking one.
+@Service
+public class BookExportService {
+
+    private final BookRepository bookRepository;
+
+    private final BookMapper bookMapper;
+
+    private final AuthService authService;
+
+    private final ObjectWriter ndjsonWriter;
+
+    private final ObjectWriter csvWriter;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Semaphore exports;
+
+    public BookExportService(BookRepository bookRepository,
+                             BookMapper bookMapper,
+                             AuthService authService,
+                             ObjectMapper objectMapper,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${book-export.max-concurrent:2}") int maxConcurrent) {
+        this.bookRepository = bookRepository;
+        this.bookMapper = bookMapper;
+        this.authService = authService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.exports = new Semaphore(maxConcurrent);
+        // values are flushed when the generator buffer fills, not after every row,
+        // and the response stream is left for the container to close
+        this.ndjsonWriter = objectMapper.writerFor(BookResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        CsvSchema schema = CsvSchema.builder()
+                .addColumn("id")
+                .addColumn("title")
+                .addColumn("description")
+                .addColumn("price")
+                .addColumn("author")
+                .addColumn("coverImageHash")
+                .setUseHeader(true)
+                .build();
+        this.csvWriter = new CsvMapper().writerFor(BookResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                // coverImagePath is a server path, not exported
+                .with(JsonGenerator.Feature.IGNORE_UNKNOWN)
+                .with(schema);
+    }
+
+    // the export endpoints: attachment headers, then the rows as they are read, the response is committed
+    // before the export ends. The transaction, and its connection, only start once a slot is taken
+    public long writeAttachment(ExportFormat format, ExportScope scope, HttpServletResponse response) throws IOException {
+        if (!exports.tryAcquire()) {
+            throw new ExportBusyException("Too many exports running, try again later");
+        }
+        try {
+            response.setContentType(format.getMediaType().toString());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(format.getFileName()).build().toString());
+            OutputStream out = response.getOutputStream();
+            return readOnlyTransaction.execute(status -> scope == ExportScope.ALL
+                    ? exportAll(format, out)
+                    : exportByCurrentAuthor(format, out));
+        } finally {
+            exports.release();
+        }
+    }
+
+    // the transaction keeps the cursor open while the rows are written
+    @Transactional(readOnly = true)
+    public long exportAll(ExportFormat format, OutputStream out) {
+        try (Stream<BookView> books = bookRepository.streamAllViews()) {
+            return write(books, format, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportByCurrentAuthor(ExportFormat format, OutputStream out) {
+        Long authorId = authService.getCurrentAuthenticatedUser().getId();
+        try (Stream<BookView> books = bookRepository.streamViewsByAuthor(authorId)) {
+            return write(books, format, out);
+        }
+    }
+
+    private long write(Stream<BookView> books, ExportFormat format, OutputStream out) {
+        ObjectWriter writer = format == ExportFormat.CSV ? csvWriter : ndjsonWriter;
+        long count = 0;
+        try (SequenceWriter sequence = writer.writeValues(out)) {
+            Iterator<BookView> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                sequence.write(bookMapper.viewToResponse(iterator.next()));
+                count++;
+            }
+            if (format == ExportFormat.NDJSON && count > 0) {
+                // the separator only goes between values, end the last line too
+                sequence.flush();
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+}
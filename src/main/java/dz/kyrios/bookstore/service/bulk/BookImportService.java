@@ -0,0 +1,263 @@
+package dz.kyrios.bookstore.service.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.dto.BookImportErrorDto;
+import dz.kyrios.bookstore.dto.BookImportResultDto;
+import dz.kyrios.bookstore.dto.BookRequestDto;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.mapper.BookMapper;
+import dz.kyrios.bookstore.service.AuthService;
+import dz.kyrios.bookstore.service.event.BooksImportedEvent;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Streaming bulk import for the authenticated author: CSV (with a title,description,price header) or NDJSON
+// rows are parsed one at a time, validated, and persisted book-import.batch-size rows at a time. Each batch
+// is one transaction sent as JDBC batches, so a failing batch does not undo the ones before it.
+@Service
+public class BookImportService {
+
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    // default length of the title and description varchar columns
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final AuthService authService;
+
+    private final BookMapper bookMapper;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ObjectReader jsonReader;
+
+    private final ObjectReader csvReader;
+
+    private final int batchSize;
+
+    private final int maxReportedErrors;
+
+    public BookImportService(AuthService authService,
+                             BookMapper bookMapper,
+                             EntityManager entityManager,
+                             TransactionTemplate transactionTemplate,
+                             ApplicationEventPublisher eventPublisher,
+                             ObjectMapper objectMapper,
+                             @Value("${book-import.batch-size:500}") int batchSize,
+                             @Value("${book-import.max-reported-errors:100}") int maxReportedErrors) {
+        this.authService = authService;
+        this.bookMapper = bookMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.jsonReader = objectMapper.readerFor(BookRequestDto.class);
+        this.csvReader = new CsvMapper()
+                .enable(CsvParser.Feature.TRIM_SPACES)
+                .enable(CsvParser.Feature.IGNORE_TRAILING_UNMAPPABLE)
+                .readerForMapOf(String.class)
+                .with(CsvSchema.emptySchema().withHeader());
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public BookImportResultDto importBooks(InputStream body, MediaType contentType) {
+        AuthenticatedUser currentUser = authService.getCurrentAuthenticatedUser();
+        Run run = new Run(currentUser.getId());
+        try {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                if (TEXT_CSV.equalsTypeAndSubtype(contentType)) {
+                    readCsv(reader, run);
+                } else if (APPLICATION_NDJSON.equalsTypeAndSubtype(contentType)) {
+                    readNdjson(reader, run);
+                } else {
+                    throw new IllegalArgumentException("Unsupported import format: " + contentType);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            run.flush();
+        } finally {
+            // batches commit one at a time, an import stopped half way still changed the catalogue
+            if (run.imported > 0) {
+                eventPublisher.publishEvent(new BooksImportedEvent(currentUser.getId(), run.imported));
+            }
+        }
+        return run.result();
+    }
+
+    private void readCsv(BufferedReader reader, Run run) throws IOException {
+        try (MappingIterator<Map<String, String>> rows = csvReader.readValues(reader)) {
+            while (true) {
+                try {
+                    if (!rows.hasNextValue()) {
+                        return;
+                    }
+                    Map<String, String> row = rows.nextValue();
+                    run.next();
+                    BookRequestDto request = new BookRequestDto();
+                    request.setTitle(row.get("title"));
+                    request.setDescription(StringUtils.hasText(row.get("description")) ? row.get("description") : null);
+                    request.setPrice(StringUtils.hasText(row.get("price")) ? Double.valueOf(row.get("price")) : null);
+                    run.add(request);
+                } catch (NumberFormatException e) {
+                    run.fail("Invalid price: " + e.getMessage());
+                } catch (JsonProcessingException e) {
+                    // malformed CSV (unbalanced quotes), the rest of the stream can not be trusted
+                    run.next();
+                    run.fail("Invalid CSV, import stopped: " + e.getOriginalMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Run run) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            run.next();
+            try {
+                // null, numbers, strings and arrays are valid NDJSON lines, not books
+                JsonNode value = jsonReader.readTree(line);
+                if (!value.isObject()) {
+                    run.fail("Invalid JSON: expected an object");
+                    continue;
+                }
+                run.add(jsonReader.treeToValue(value, BookRequestDto.class));
+            } catch (JsonProcessingException e) {
+                run.fail("Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private String validate(BookRequestDto request) {
+        if (!StringUtils.hasText(request.getTitle())) {
+            return "Title is required";
+        }
+        if (request.getTitle().length() > MAX_TEXT_LENGTH) {
+            return "Title is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (request.getDescription() != null && request.getDescription().length() > MAX_TEXT_LENGTH) {
+            return "Description is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (request.getPrice() != null && (request.getPrice() < 0 || !Double.isFinite(request.getPrice()))) {
+            return "Price must be a non-negative number";
+        }
+        return null;
+    }
+
+    // counters and the pending batch of one import
+    private class Run {
+
+        private final Long authorId;
+
+        private final long start = System.nanoTime();
+
+        private final List<Book> books = new ArrayList<>(batchSize);
+
+        private final List<Long> bookRows = new ArrayList<>(batchSize);
+
+        private final List<BookImportErrorDto> errors = new ArrayList<>();
+
+        private long rows;
+
+        private long imported;
+
+        private long failed;
+
+        Run(Long authorId) {
+            this.authorId = authorId;
+        }
+
+        void next() {
+            rows++;
+        }
+
+        void add(BookRequestDto request) {
+            String error = validate(request);
+            if (error != null) {
+                fail(error);
+                return;
+            }
+            books.add(bookMapper.requestToEntity(request));
+            bookRows.add(rows);
+            if (books.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void fail(String message) {
+            fail(rows, message);
+        }
+
+        void fail(long row, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new BookImportErrorDto(row, message));
+            }
+        }
+
+        void flush() {
+            if (books.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                    User author = entityManager.getReference(User.class, authorId);
+                    for (Book book : books) {
+                        book.setAuthor(author);
+                        entityManager.persist(book);
+                    }
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                imported += books.size();
+            } catch (RuntimeException e) {
+                String message = "Not saved, batch failed: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                bookRows.forEach(row -> fail(row, message));
+            }
+            books.clear();
+            bookRows.clear();
+        }
+
+        BookImportResultDto result() {
+            long durationMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            return new BookImportResultDto(rows, imported, failed, durationMillis,
+                    rows * 1000.0 / durationMillis, errors);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package dz.kyrios.bookstore.service.bulk;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+public enum ExportFormat {
+
+    // one JSON object per line
+    NDJSON(BookImportService.APPLICATION_NDJSON, "books.ndjson"),
+    // header line, then id,title,description,price,author,coverImageHash
+    CSV(BookImportService.TEXT_CSV, "books.csv");
+
+    private final MediaType mediaType;
+
+    private final String fileName;
+
+    ExportFormat(MediaType mediaType, String fileName) {
+        this.mediaType = mediaType;
+        this.fileName = fileName;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public static ExportFormat from(String value) {
+        try {
+            return ExportFormat.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid export format: " + value + ", expected ndjson or csv");
+        }
+    }
+}
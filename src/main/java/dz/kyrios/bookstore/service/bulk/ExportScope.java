@@ -0,0 +1,9 @@
+package dz.kyrios.bookstore.service.bulk;
+
+public enum ExportScope {
+
+    // the whole catalogue, GET /api/v1/books/export/all
+    ALL,
+    // the books of the authenticated author, GET /api/v1/books/export
+    CURRENT_AUTHOR
+}
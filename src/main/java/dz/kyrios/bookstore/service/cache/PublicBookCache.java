@@ -0,0 +1,56 @@
+package dz.kyrios.bookstore.service.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dz.kyrios.bookstore.config.datasource.PrimaryReads;
+import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.mapper.BookMapper;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.service.event.BookChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+// Read-through cache of the public book details, keyed by book id.
+// Missing books are not cached, entries are dropped once a change to the book is committed.
+// Loads read the primary: a replica behind the change would put the old book back for expire-after-write.
+@Component
+public class PublicBookCache {
+
+    private final LoadingCache<Long, BookResponseDto> books;
+
+    public PublicBookCache(BookRepository bookRepository,
+                           BookMapper bookMapper,
+                           @Value("${cache.public-books.max-size:10000}") long maxSize,
+                           @Value("${cache.public-books.expire-after-write:10m}") Duration expireAfterWrite,
+                           @Value("${cache.public-books.refresh-after-write:0s}") Duration refreshAfterWrite) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats();
+        // stale-while-revalidate: past this age the cached value is still served while it reloads in the background
+        if (!refreshAfterWrite.isZero()) {
+            builder.refreshAfterWrite(refreshAfterWrite);
+        }
+        this.books = builder.build(id -> PrimaryReads.call(() -> bookRepository.findViewById(id)
+                .map(bookMapper::viewToResponse)
+                .orElse(null)));
+    }
+
+    // null when the book does not exist
+    public BookResponseDto get(Long id) {
+        return books.get(id);
+    }
+
+    public CacheStats stats() {
+        return books.stats();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        books.invalidate(event.getBookId());
+    }
+}
@@ -0,0 +1,123 @@
+package dz.kyrios.bookstore.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dz.kyrios.bookstore.config.datasource.PrimaryReads;
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.service.BookService;
+import dz.kyrios.bookstore.service.event.BookChangedEvent;
+import dz.kyrios.bookstore.service.event.BooksImportedEvent;
+import dz.kyrios.bookstore.service.pagination.CountMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+// Serialized bodies of the first pages of the anonymous catalogue (no keyword, exact count), keyed by page and size.
+// A hit is written as is, no query, mapping or JSON serialization. Every committed book change or import
+// drops all the pages: the generation in the key also keeps a page loaded before the change from being stored
+// under a key that is still read. Pages are loaded from the primary, never from a replica behind the change.
+@Component
+public class PublicListingCache {
+
+    private final BookService bookService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, SerializedListing> listings;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final int maxPages;
+
+    private final int maxPageSize;
+
+    private final boolean gzip;
+
+    private final int gzipMinSize;
+
+    public PublicListingCache(BookService bookService,
+                              ObjectMapper objectMapper,
+                              @Value("${cache.public-listing.max-pages:5}") int maxPages,
+                              @Value("${cache.public-listing.max-page-size:50}") int maxPageSize,
+                              @Value("${cache.public-listing.max-size:500}") long maxSize,
+                              @Value("${cache.public-listing.expire-after-write:1m}") Duration expireAfterWrite,
+                              @Value("${cache.public-listing.gzip:true}") boolean gzip,
+                              @Value("${cache.public-listing.gzip-min-size:1024}") int gzipMinSize) {
+        this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.maxPages = maxPages;
+        this.maxPageSize = maxPageSize;
+        this.gzip = gzip;
+        this.gzipMinSize = gzipMinSize;
+        this.listings = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    // whether a listing request is one of the hot pages kept here
+    public boolean covers(String keyword, String cursor, CountMode countMode, int page, int size) {
+        return (keyword == null || keyword.isBlank())
+                && cursor == null
+                && countMode == CountMode.EXACT
+                && page >= 0 && page < maxPages
+                && size > 0 && size <= maxPageSize;
+    }
+
+    public SerializedListing get(int page, int size) {
+        // concurrent misses on one page run a single load, not coalesced with the loads of other generations
+        return listings.get(generation.get() + ":" + page + ":" + size, key -> PrimaryReads.call(() -> load(page, size)));
+    }
+
+    public CacheStats stats() {
+        return listings.stats();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        listings.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        invalidateAll();
+    }
+
+    private SerializedListing load(int page, int size) {
+        BookListingState state = bookService.getListingState("");
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(
+                    bookService.getBooksWithSearch("", PageRequest.of(page, size), CountMode.EXACT, state.getCount()));
+            return new SerializedListing(BookListingState.eTag(state), json, gzip && json.length >= gzipMinSize ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,116 @@
+package dz.kyrios.bookstore.service.cache;
+
+import dz.kyrios.bookstore.config.datasource.PrimaryReads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Single-flight: concurrent calls with the same key run the query once, the first caller runs it and the
+// others wait for its result, or its exception. Nothing is kept once the query returns, this is not a cache.
+// A caller that waited longer than query-coalescing.timeout stops waiting and runs the query itself.
+// bookstore.query.coalescing counts the calls by outcome: leader (ran the query), shared (got the result
+// of another call) and timeout, the coalescing ratio is shared over all of them.
+// PrimaryReads calls are never coalesced: they must see every committed write, a query started before one
+// would hide it (a listing cache load joining the load of a generation dropped since).
+@Component
+public class QueryCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final boolean enabled;
+
+    private final long timeoutMillis;
+
+    private final Counter leaders;
+
+    private final Counter shared;
+
+    private final Counter timeouts;
+
+    public QueryCoalescer(MeterRegistry meterRegistry,
+                          @Value("${query-coalescing.enabled:true}") boolean enabled,
+                          @Value("${query-coalescing.timeout:5s}") Duration timeout) {
+        this.enabled = enabled;
+        this.timeoutMillis = timeout.toMillis();
+        this.leaders = outcome(meterRegistry, "leader");
+        this.shared = outcome(meterRegistry, "shared");
+        this.timeouts = outcome(meterRegistry, "timeout");
+        Gauge.builder("bookstore.query.coalescing.in.flight", inFlight, ConcurrentMap::size)
+                .description("Distinct coalesced queries running")
+                .register(meterRegistry);
+        Gauge.builder("bookstore.query.coalescing.waiting", waiting, AtomicInteger::get)
+                .description("Calls waiting for the result of a coalesced query")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> query) {
+        if (!enabled || PrimaryReads.active()) {
+            return query.get();
+        }
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, call);
+        if (running == null) {
+            return lead(key, call, query);
+        }
+        waiting.incrementAndGet();
+        try {
+            T result = (T) running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            shared.increment();
+            return result;
+        } catch (ExecutionException e) {
+            shared.increment();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            timeouts.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for query " + key, e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        return query.get();
+    }
+
+    private <T> T lead(String key, CompletableFuture<Object> call, Supplier<T> query) {
+        leaders.increment();
+        try {
+            T result = query.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            // later calls run a new query, they may come after a change the result does not show
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("bookstore.query.coalescing")
+                .description("Coalesced query calls, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
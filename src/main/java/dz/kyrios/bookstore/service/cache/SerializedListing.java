@@ -0,0 +1,17 @@
+package dz.kyrios.bookstore.service.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// A public listing page as sent on the wire: the JSON body, its gzip encoding, and its ETag
+@Getter
+@AllArgsConstructor
+public class SerializedListing {
+
+    private final String eTag;
+
+    private final byte[] json;
+
+    // null when the body is under cache.public-listing.gzip-min-size or gzip is disabled
+    private final byte[] gzip;
+}
@@ -0,0 +1,13 @@
+package dz.kyrios.bookstore.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by BookService whenever a book is created, edited or deleted,
+// caches listen to it after the transaction commits
+@Getter
+@AllArgsConstructor
+public class BookChangedEvent {
+
+    private final Long bookId;
+}
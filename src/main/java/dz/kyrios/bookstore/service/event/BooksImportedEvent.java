@@ -0,0 +1,15 @@
+package dz.kyrios.bookstore.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by BookImportService once an import saved at least one book,
+// the batches are already committed when it is published
+@Getter
+@AllArgsConstructor
+public class BooksImportedEvent {
+
+    private final Long authorId;
+
+    private final long imported;
+}
@@ -0,0 +1,13 @@
+package dz.kyrios.bookstore.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by CoverStorageService when the last reference to a cover blob is released (hash null for a cover
+// stored under its client file name), CoverCleanupWorker deletes the file once the transaction commits
+@Getter
+@AllArgsConstructor
+public class CoverReleasedEvent {
+
+    private final String hash;
+}
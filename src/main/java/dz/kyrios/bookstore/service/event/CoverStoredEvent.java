@@ -0,0 +1,14 @@
+package dz.kyrios.bookstore.service.event;
+
+import dz.kyrios.bookstore.service.storage.StoredCover;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by BookService when a new cover file is stored for a book,
+// the thumbnail pipeline pre-generates the common sizes once the transaction commits
+@Getter
+@AllArgsConstructor
+public class CoverStoredEvent {
+
+    private final StoredCover cover;
+}
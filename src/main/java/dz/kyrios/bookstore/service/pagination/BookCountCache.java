@@ -0,0 +1,28 @@
+package dz.kyrios.bookstore.service.pagination;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+// Short lived listing totals for the estimated count mode, keyed by scope and keyword
+@Component
+public class BookCountCache {
+
+    private final Cache<String, Long> counts;
+
+    public BookCountCache(@Value("${pagination.count-cache.ttl:30s}") Duration ttl,
+                          @Value("${pagination.count-cache.max-size:10000}") long maxSize) {
+        this.counts = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public long get(String key, LongSupplier exactCount) {
+        return counts.get(key, k -> exactCount.getAsLong());
+    }
+}
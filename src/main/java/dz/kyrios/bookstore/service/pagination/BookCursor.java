@@ -0,0 +1,44 @@
+package dz.kyrios.bookstore.service.pagination;
+
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Keyset position in a listing ordered by book id, serialized as an opaque url safe token
+public final class BookCursor {
+
+    private static final String PREFIX = "v1:";
+
+    private BookCursor() {
+    }
+
+    public static String encode(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // a keyset page reads size + 1 rows, the size is checked before any query
+    public static int checkSize(int size, int maxSize) {
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("Invalid page size: " + size + ", expected 1 to " + maxSize);
+        }
+        return size;
+    }
+
+    // returns the id to seek after, 0 for the first page
+    public static long decode(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return 0L;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
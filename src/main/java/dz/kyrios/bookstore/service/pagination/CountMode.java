@@ -0,0 +1,22 @@
+package dz.kyrios.bookstore.service.pagination;
+
+import java.util.Locale;
+
+// How the total of a page/size listing is computed
+public enum CountMode {
+
+    // COUNT query with the listing predicate, the historical behaviour
+    EXACT,
+    // planner statistics or a recently cached count, may be slightly off
+    ESTIMATED,
+    // no total at all, the response is a slice that only tells if a next page exists
+    NONE;
+
+    public static CountMode from(String value) {
+        try {
+            return CountMode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid count mode: " + value + ", expected exact, estimated or none");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dz.kyrios.bookstore.service.search;
+
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.dto.BookView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+// Keyword search over the catalogue, the implementation is selected with the "search.engine" property
+public interface BookSearchEngine {
+
+    Slice<BookView> search(String keyword, Pageable pageable);
+
+    Slice<BookView> searchByAuthor(Long authorId, String keyword, Pageable pageable);
+
+    long count(String keyword);
+
+    long countByAuthor(Long authorId, String keyword);
+
+    // count, version sum and latest change of the matching books, the validators of a public search
+    BookListingState listingState(String keyword);
+
+    // keyset variants: matching books with an id greater than afterId, ordered by id
+    List<BookView> searchAfter(String keyword, Long afterId, int limit);
+
+    List<BookView> searchByAuthorAfter(Long authorId, String keyword, Long afterId, int limit);
+
+    // cheap approximation of the whole catalogue size, used by the estimated count mode
+    long estimateCatalogueSize();
+}
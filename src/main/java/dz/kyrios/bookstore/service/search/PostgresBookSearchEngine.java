@@ -0,0 +1,66 @@
+package dz.kyrios.bookstore.service.search;
+
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.dto.BookView;
+import dz.kyrios.bookstore.repository.BookRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Full text search on the GIN indexed book.search_vector column (see schema-postgresql.sql),
+// results are ranked by relevance and matching ignores case and accents
+@Component
+@ConditionalOnProperty(name = "search.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresBookSearchEngine implements BookSearchEngine {
+
+    private final BookRepository bookRepository;
+
+    public PostgresBookSearchEngine(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public Slice<BookView> search(String keyword, Pageable pageable) {
+        return bookRepository.fullTextSearch(keyword, pageable);
+    }
+
+    @Override
+    public Slice<BookView> searchByAuthor(Long authorId, String keyword, Pageable pageable) {
+        return bookRepository.fullTextSearchByAuthor(authorId, keyword, pageable);
+    }
+
+    @Override
+    public long count(String keyword) {
+        return bookRepository.countFullTextSearch(keyword);
+    }
+
+    @Override
+    public long countByAuthor(Long authorId, String keyword) {
+        return bookRepository.countFullTextSearchByAuthor(authorId, keyword);
+    }
+
+    @Override
+    public BookListingState listingState(String keyword) {
+        return bookRepository.findFullTextListingState(keyword);
+    }
+
+    @Override
+    public List<BookView> searchAfter(String keyword, Long afterId, int limit) {
+        return bookRepository.fullTextSearchAfter(keyword, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public List<BookView> searchByAuthorAfter(Long authorId, String keyword, Long afterId, int limit) {
+        return bookRepository.fullTextSearchByAuthorAfter(authorId, keyword, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public long estimateCatalogueSize() {
+        long estimate = bookRepository.estimateRowCount();
+        return estimate >= 0 ? estimate : bookRepository.count();
+    }
+}
@@ -0,0 +1,64 @@
+package dz.kyrios.bookstore.service.search;
+
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.dto.BookView;
+import dz.kyrios.bookstore.repository.BookRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Portable fallback (H2, tests): case insensitive substring match, no ranking and no accent folding
+@Component
+@ConditionalOnProperty(name = "search.engine", havingValue = "simple")
+public class SimpleBookSearchEngine implements BookSearchEngine {
+
+    private final BookRepository bookRepository;
+
+    public SimpleBookSearchEngine(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public Slice<BookView> search(String keyword, Pageable pageable) {
+        return bookRepository.getBooksWithSearch(keyword, pageable);
+    }
+
+    @Override
+    public Slice<BookView> searchByAuthor(Long authorId, String keyword, Pageable pageable) {
+        return bookRepository.getBooksWithSearchByUser(authorId, keyword, pageable);
+    }
+
+    @Override
+    public long count(String keyword) {
+        return bookRepository.countBooksWithSearch(keyword);
+    }
+
+    @Override
+    public long countByAuthor(Long authorId, String keyword) {
+        return bookRepository.countBooksWithSearchByUser(authorId, keyword);
+    }
+
+    @Override
+    public BookListingState listingState(String keyword) {
+        return bookRepository.findListingStateWithSearch(keyword);
+    }
+
+    @Override
+    public List<BookView> searchAfter(String keyword, Long afterId, int limit) {
+        return bookRepository.getBooksWithSearchAfter(keyword, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public List<BookView> searchByAuthorAfter(Long authorId, String keyword, Long afterId, int limit) {
+        return bookRepository.getBooksWithSearchByUserAfter(authorId, keyword, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public long estimateCatalogueSize() {
+        return bookRepository.count();
+    }
+}
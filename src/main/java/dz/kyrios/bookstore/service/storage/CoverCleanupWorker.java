@@ -0,0 +1,150 @@
+package dz.kyrios.bookstore.service.storage;
+
+import dz.kyrios.bookstore.entity.CoverBlob;
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import dz.kyrios.bookstore.repository.CoverBlobRepository;
+import dz.kyrios.bookstore.repository.CoverCleanupRepository;
+import dz.kyrios.bookstore.service.event.CoverReleasedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Deletes the files of the due cover_cleanup rows, outside of the request transactions: every
+// cover.cleanup.interval, and right after a transaction releasing a cover commits. A blob file is checked and
+// deleted holding its cover_blob row lock, which uploads take too; one referenced again or staged by a new
+// upload is kept. A failed delete is retried after cover.cleanup.retry-delay times the attempts.
+@Component
+public class CoverCleanupWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(CoverCleanupWorker.class);
+
+    private final CoverCleanupRepository coverCleanupRepository;
+
+    private final CoverBlobRepository coverBlobRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("cover-cleanup-"));
+
+    private final int batchSize;
+
+    private final Duration retryDelay;
+
+    private final Counter deleted;
+
+    private final Counter kept;
+
+    private final Counter failed;
+
+    public CoverCleanupWorker(CoverCleanupRepository coverCleanupRepository,
+                              CoverBlobRepository coverBlobRepository,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${cover.cleanup.batch-size:100}") int batchSize,
+                              @Value("${cover.cleanup.retry-delay:1m}") Duration retryDelay) {
+        this.coverCleanupRepository = coverCleanupRepository;
+        this.coverBlobRepository = coverBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.deleted = outcome(meterRegistry, "deleted");
+        this.kept = outcome(meterRegistry, "kept");
+        this.failed = outcome(meterRegistry, "failed");
+    }
+
+    @Scheduled(fixedDelayString = "${cover.cleanup.interval:PT30S}", initialDelayString = "${cover.cleanup.interval:PT30S}")
+    public void poll() {
+        processDue();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCoverReleased(CoverReleasedEvent event) {
+        executor.execute(this::processDue);
+    }
+
+    // rows processed, one run at a time
+    public synchronized int processDue() {
+        int processed = 0;
+        List<CoverCleanup> due;
+        do {
+            due = coverCleanupRepository.findDue(Instant.now(), PageRequest.ofSize(batchSize));
+            due.forEach(this::process);
+            processed += due.size();
+        } while (due.size() == batchSize);
+        return processed;
+    }
+
+    // one transaction per row, read-write so it runs on the primary even with a read replica configured
+    private void process(CoverCleanup cleanup) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (cleanup.getHash() != null && !lockUnused(cleanup)) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(Paths.get(cleanup.getPath()));
+                coverCleanupRepository.delete(cleanup);
+                deleted.increment();
+            } catch (IOException e) {
+                cleanup.setAttempts(cleanup.getAttempts() + 1);
+                cleanup.setDueAt(Instant.now().plus(retryDelay.multipliedBy(cleanup.getAttempts())));
+                coverCleanupRepository.save(cleanup);
+                failed.increment();
+                log.warn("Could not delete cover file {} (attempt {}): {}", cleanup.getPath(), cleanup.getAttempts(), e.toString());
+            }
+        });
+    }
+
+    // takes the cover_blob row lock of the blob until the commit, so no upload can place or reference the file
+    // while it is deleted; false when the file is still needed: referenced again, staged by an upload not
+    // referenced yet, or the row was taken by CoverStorageService.reference meanwhile
+    private boolean lockUnused(CoverCleanup cleanup) {
+        String hash = cleanup.getHash();
+        // a row created to be locked is not committed: removed below when unreferenced
+        CoverBlob blob = coverBlobRepository.lock(hash, MediaType.APPLICATION_OCTET_STREAM_VALUE, 0);
+        if (!coverCleanupRepository.existsById(cleanup.getId())) {
+            return false;
+        }
+        boolean unused = blob.getRefCount() == 0
+                && !coverCleanupRepository.existsPending(hash, cleanup.getId(), Instant.now());
+        if (blob.getRefCount() == 0) {
+            // only a lock target, reference() inserts it again
+            coverBlobRepository.deleteIfUnreferenced(hash);
+        }
+        if (!unused) {
+            coverCleanupRepository.delete(cleanup);
+            kept.increment();
+        }
+        return unused;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("bookstore.cover.cleanup")
+                .description("Processed cover_cleanup rows, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
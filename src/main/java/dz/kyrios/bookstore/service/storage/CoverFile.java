@@ -0,0 +1,26 @@
+package dz.kyrios.bookstore.service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+// A stored cover ready to be served, with its HTTP validators
+@Getter
+@AllArgsConstructor
+public class CoverFile {
+
+    private final Path path;
+    private final long size;
+    private final Instant lastModified;
+    private final String eTag;
+    private final MediaType contentType;
+
+    public Resource getResource() {
+        return new FileSystemResource(path);
+    }
+}
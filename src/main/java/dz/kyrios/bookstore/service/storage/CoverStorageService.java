@@ -0,0 +1,268 @@
+package dz.kyrios.bookstore.service.storage;
+
+import dz.kyrios.bookstore.config.exception.InvalidFileException;
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import dz.kyrios.bookstore.repository.CoverBlobRepository;
+import dz.kyrios.bookstore.repository.CoverCleanupRepository;
+import dz.kyrios.bookstore.service.event.CoverReleasedEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Content addressed cover store. Uploads are streamed to a temp file with a fixed size buffer while they are
+// hashed, size checked and type checked, then moved to blobs/<2 hex>/<2 hex>/<sha-256> under the upload
+// directory. Identical covers share one file, cover_blob rows count the books referencing each file.
+// No file is written or deleted in a transaction: uploads are staged before it, and deletes go through the
+// cover_cleanup outbox processed by CoverCleanupWorker.
+@Service
+public class CoverStorageService {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final CoverBlobRepository coverBlobRepository;
+
+    private final CoverCleanupRepository coverCleanupRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Path uploadDir;
+
+    private final long maxSize;
+
+    // staged files not referenced by then are deleted, long enough for the transaction using them to commit
+    private final Duration stagedGrace;
+
+    private final Timer writeTimer;
+
+    private final DistributionSummary writeBytes;
+
+    public CoverStorageService(CoverBlobRepository coverBlobRepository,
+                               CoverCleanupRepository coverCleanupRepository,
+                               ApplicationEventPublisher eventPublisher,
+                               TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${file.upload-dir}") String uploadDir,
+                               @Value("${file.max-size:5MB}") DataSize maxSize,
+                               @Value("${cover.cleanup.staged-grace:5m}") Duration stagedGrace) {
+        this.coverBlobRepository = coverBlobRepository;
+        this.coverCleanupRepository = coverCleanupRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.uploadDir = Paths.get(uploadDir);
+        this.maxSize = maxSize.toBytes();
+        this.stagedGrace = stagedGrace;
+        this.writeTimer = Timer.builder("bookstore.cover.write")
+                .description("Time to stream, hash and move an uploaded cover into the store")
+                .tag("file", "original")
+                .register(meterRegistry);
+        this.writeBytes = DistributionSummary.builder("bookstore.cover.write.bytes")
+                .description("Size of the cover files written")
+                .baseUnit("bytes")
+                .tag("file", "original")
+                .register(meterRegistry);
+    }
+
+    // writes the upload in the store, to be referenced with reference() in the transaction that uses it.
+    // Called outside of any transaction: streaming and hashing hold no connection, only the final move does,
+    // and the cleanup recorded with it deletes the file after stagedGrace unless that transaction commits.
+    public StoredCover stage(MultipartFile file) {
+        if (file.getSize() > maxSize) {
+            throw new InvalidFileException("Cover image exceeds the maximum size of " + maxSize + " bytes");
+        }
+        Path temp = null;
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(uploadDir);
+            temp = Files.createTempFile(uploadDir, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = 0;
+            String contentType = null;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(temp)) {
+                int read;
+                while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                    if (contentType == null) {
+                        contentType = detectImageType(buffer, read);
+                    }
+                    size += read;
+                    if (size > maxSize) {
+                        throw new InvalidFileException("Cover image exceeds the maximum size of " + maxSize + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new InvalidFileException("Cover image is empty");
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = blobPath(hash);
+            Files.createDirectories(target.getParent());
+            Long stagedId = place(temp, target, hash, contentType, size);
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            writeBytes.record(size);
+            return new StoredCover(target, hash, size, contentType, stagedId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    // moves the file into place and records it as staged in one short transaction holding the cover_blob row
+    // lock, so CoverCleanupWorker deletes the file either before (and it is placed again) or not at all.
+    // An existing file is replaced, not trusted: it may be the one of a release about to be deleted.
+    private Long place(Path temp, Path target, String hash, String contentType, long size) {
+        return transactionTemplate.execute(status -> {
+            coverBlobRepository.lock(hash, contentType, size);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return coverCleanupRepository.save(
+                    new CoverCleanup(null, hash, target.toString(), Instant.now().plus(stagedGrace), 0)).getId();
+        });
+    }
+
+    // takes a reference on a staged cover, its file is kept from the commit on. The cover_blob row stays locked
+    // until then, CoverCleanupWorker can not delete the file between the check below and the commit.
+    @Transactional
+    public void reference(StoredCover cover) {
+        coverBlobRepository.lock(cover.getHash(), cover.getContentType(), cover.getSize());
+        // the staged row is gone once the grace period expired and the worker deleted the file
+        if (coverCleanupRepository.deleteStaged(cover.getStagedCleanupId()) == 0 || !Files.exists(cover.getPath())) {
+            throw new InvalidFileException("The uploaded cover expired, upload it again");
+        }
+        coverBlobRepository.acquire(cover.getHash());
+    }
+
+    // null when the file is missing from the upload directory
+    public CoverFile open(String path, String hash, String contentType) {
+        Path file = Paths.get(path);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Instant lastModified = attributes.lastModifiedTime().toInstant();
+            // strong validator from the content hash, covers stored before hashing get a weak one
+            String eTag = hash != null
+                    ? "\"" + hash + "\""
+                    : "W/\"" + attributes.size() + "-" + lastModified.toEpochMilli() + "\"";
+            MediaType mediaType = contentType != null
+                    ? MediaType.parseMediaType(contentType)
+                    : MediaTypeFactory.getMediaType(file.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            return new CoverFile(file, attributes.size(), lastModified, eTag, mediaType);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null when no blob is stored with this hash
+    public CoverFile openBlob(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return null;
+        }
+        return coverBlobRepository.findById(hash)
+                .map(blob -> open(blobPath(hash).toString(), hash, blob.getContentType()))
+                .orElse(null);
+    }
+
+    // drops the reference a book holds on its cover, the file goes away with the last reference once the
+    // transaction commits
+    @Transactional
+    public void release(String hash, String path) {
+        if (path == null) {
+            return;
+        }
+        if (hash == null || !Paths.get(path).getFileName().toString().equals(hash)) {
+            // covers stored under the client file name before the blob store are owned by a single book
+            coverCleanupRepository.save(new CoverCleanup(null, null, path, Instant.now(), 0));
+            eventPublisher.publishEvent(new CoverReleasedEvent(null));
+            return;
+        }
+        coverBlobRepository.release(hash);
+        if (coverBlobRepository.deleteIfUnreferenced(hash) > 0) {
+            coverCleanupRepository.save(new CoverCleanup(null, hash, blobPath(hash).toString(), Instant.now(), 0));
+            eventPublisher.publishEvent(new CoverReleasedEvent(hash));
+        }
+    }
+
+    private Path blobPath(String hash) {
+        return uploadDir.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    // sniffs the first bytes, the client supplied content type is not trusted
+    private String detectImageType(byte[] header, int length) {
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (length >= 12 && startsWith(header, length, 'R', 'I', 'F', 'F')
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        throw new InvalidFileException("Cover image must be a JPEG, PNG, GIF or WebP file");
+    }
+
+    private boolean startsWith(byte[] data, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((data[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // a left over file is only wasted space
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package dz.kyrios.bookstore.service.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dz.kyrios.bookstore.service.event.CoverStoredEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+// Resized variants of the stored covers (GET /books/{id}/cover?w=200).
+// Variants are generated on a bounded worker pool, concurrent requests for the same variant share one
+// generation, and the files are kept in a size bounded disk cache keyed by the content hash of the original.
+@Service
+public class CoverThumbnailService {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    // decompression bomb guard, larger images are served at full size
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    private final List<Integer> widths;
+
+    private final Path cacheDir;
+
+    private final Duration timeout;
+
+    private final ThreadPoolExecutor executor;
+
+    // variant key -> file, weighted in KB
+    private final Cache<String, Path> variants;
+
+    private final ConcurrentMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    // decoding of the originals and encoding of the variants
+    private final Timer readTimer;
+
+    private final DistributionSummary readBytes;
+
+    private final Timer writeTimer;
+
+    private final DistributionSummary writeBytes;
+
+    public CoverThumbnailService(MeterRegistry meterRegistry,
+                                 @Value("${cover.thumbnails.widths:200,400}") List<Integer> widths,
+                                 @Value("${cover.thumbnails.dir:${file.upload-dir}/thumbnails}") String cacheDir,
+                                 @Value("${cover.thumbnails.max-cache-size:256MB}") DataSize maxCacheSize,
+                                 @Value("${cover.thumbnails.pool-size:2}") int poolSize,
+                                 @Value("${cover.thumbnails.queue-capacity:64}") int queueCapacity,
+                                 @Value("${cover.thumbnails.timeout:5s}") Duration timeout) {
+        this.widths = widths.stream().sorted().toList();
+        this.cacheDir = Paths.get(cacheDir);
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("cover-thumbnail-"));
+        this.variants = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxCacheSize.toKilobytes()))
+                .weigher((String key, Path file) -> weightOf(file))
+                .evictionListener((String key, Path file, RemovalCause cause) -> deleteQuietly(file))
+                .executor(Runnable::run)
+                .build();
+        this.readTimer = Timer.builder("bookstore.cover.read")
+                .description("Time to decode a cover for resizing")
+                .tag("file", "original")
+                .register(meterRegistry);
+        this.readBytes = DistributionSummary.builder("bookstore.cover.read.bytes")
+                .description("Size of the cover files read for resizing")
+                .baseUnit("bytes")
+                .tag("file", "original")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("bookstore.cover.write")
+                .description("Time to encode and write a resized cover")
+                .tag("file", "thumbnail")
+                .register(meterRegistry);
+        this.writeBytes = DistributionSummary.builder("bookstore.cover.write.bytes")
+                .description("Size of the cover files written")
+                .baseUnit("bytes")
+                .tag("file", "thumbnail")
+                .register(meterRegistry);
+        meterRegistry.gauge("bookstore.cover.thumbnails.queued", executor, e -> e.getQueue().size());
+        loadCacheIndex();
+    }
+
+    // the variant of the cover for the smallest configured width >= requestedWidth, the original when there
+    // is none, when the format can not be resized or when the pool can not produce it within the timeout
+    public CoverFile thumbnail(CoverFile original, int requestedWidth) {
+        Integer width = widthFor(requestedWidth);
+        String format = outputFormat(original.getContentType());
+        if (width == null || format == null) {
+            return original;
+        }
+        String key = variantKey(sourceKey(original), width);
+        Path variant = variants.getIfPresent(key);
+        try {
+            if (variant == null || !Files.exists(variant)) {
+                variant = generate(key, original.getPath(), format, width).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            BasicFileAttributes attributes = Files.readAttributes(variant, BasicFileAttributes.class);
+            return new CoverFile(variant, attributes.size(), attributes.lastModifiedTime().toInstant(),
+                    "\"" + key + "\"", MediaType.parseMediaType("image/" + format));
+        } catch (ExecutionException | TimeoutException | NoSuchFileException e) {
+            // saturated pool, slow or unreadable image, or a variant evicted meanwhile
+            return original;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return original;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // pre-generates the configured sizes of a new cover, skipped when the pool is saturated
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCoverStored(CoverStoredEvent event) {
+        StoredCover cover = event.getCover();
+        String format = cover.getContentType() == null ? null : outputFormat(MediaType.parseMediaType(cover.getContentType()));
+        if (format == null) {
+            return;
+        }
+        for (int width : widths) {
+            String key = variantKey(cover.getHash(), width);
+            if (variants.getIfPresent(key) == null) {
+                generate(key, cover.getPath(), format, width);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // total size of the cached variants in KB
+    long cachedKilobytes() {
+        variants.cleanUp();
+        return variants.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    private CompletableFuture<Path> generate(String key, Path source, String format, int width) {
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(resize(key, source, format, width));
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private Path resize(String key, Path source, String format, int width) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage image = read(source, width);
+        readTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        readBytes.record(Files.size(source));
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, Math.round((float) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight,
+                "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Files.createDirectories(cacheDir);
+        Path temp = Files.createTempFile(cacheDir, "variant-", ".tmp");
+        try {
+            start = System.nanoTime();
+            write(scaled, format, temp);
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            writeBytes.record(Files.size(temp));
+            Path target = cacheDir.resolve(key + "." + format);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            variants.put(key, target);
+            return target;
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    private BufferedImage read(Path source, int width) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No image reader for " + source);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                if ((long) sourceWidth * reader.getHeight(0) > MAX_PIXELS) {
+                    throw new IOException("Cover image too large to resize: " + source);
+                }
+                // decode at no less than twice the target width, most pixels of a large cover are never read
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, sourceWidth / (width * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // only the configured widths are generated, so arbitrary ?w= values can not fill the cache
+    private Integer widthFor(int requestedWidth) {
+        if (requestedWidth <= 0) {
+            return null;
+        }
+        return widths.stream().filter(width -> width >= requestedWidth).findFirst().orElse(null);
+    }
+
+    // JPEG stays JPEG, PNG and GIF become PNG, formats ImageIO can not decode (WebP) are served as is
+    private String outputFormat(MediaType contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        if (MediaType.IMAGE_JPEG.equalsTypeAndSubtype(contentType)) {
+            return "jpeg";
+        }
+        if (MediaType.IMAGE_PNG.equalsTypeAndSubtype(contentType) || MediaType.IMAGE_GIF.equalsTypeAndSubtype(contentType)) {
+            return "png";
+        }
+        return null;
+    }
+
+    // the content hash behind a strong ETag, covers stored before hashing are keyed by path, size and mtime
+    private String sourceKey(CoverFile original) {
+        String eTag = original.getETag();
+        if (eTag != null && !eTag.startsWith("W/")) {
+            return eTag.replace("\"", "");
+        }
+        try {
+            byte[] identity = (original.getPath().toAbsolutePath() + ":" + original.getSize() + ":"
+                    + original.getLastModified().toEpochMilli()).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(identity));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String variantKey(String sourceKey, int width) {
+        return sourceKey + "-w" + width;
+    }
+
+    // picks up the variants left by a previous run, oldest first
+    private void loadCacheIndex() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(this::lastModified))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        int dot = name.lastIndexOf('.');
+                        if (name.endsWith(".tmp") || dot < 0) {
+                            deleteQuietly(file);
+                        } else {
+                            variants.put(name.substring(0, dot), file);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private int weightOf(Path file) {
+        try {
+            return (int) Math.max(1, (Files.size(file) + 1023) / 1024);
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // the next startup cleans up left over files
+        }
+    }
+}
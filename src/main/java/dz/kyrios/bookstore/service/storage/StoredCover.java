@@ -0,0 +1,19 @@
+package dz.kyrios.bookstore.service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+@Getter
+@AllArgsConstructor
+public class StoredCover {
+
+    private final Path path;
+    // hex encoded SHA-256 of the content
+    private final String hash;
+    private final long size;
+    private final String contentType;
+    // cover_cleanup row deleting the file unless a transaction references it
+    private final Long stagedCleanupId;
+}
@@ -0,0 +1,27 @@
+-- Runs after Hibernate schema update (spring.jpa.defer-datasource-initialization), every statement is idempotent
+
+-- Full text search on books
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() is only STABLE, generated columns and index expressions need an IMMUTABLE wrapper
+CREATE OR REPLACE FUNCTION bookstore_unaccent(text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+    AS 'SELECT public.unaccent(''public.unaccent''::regdictionary, $1)';
+
+ALTER TABLE book ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', bookstore_unaccent(coalesce(title, ''))), 'A') ||
+        setweight(to_tsvector('simple', bookstore_unaccent(coalesce(description, ''))), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_book_search_vector ON book USING GIN (search_vector);
+
+-- Book ids moved from an identity column to the pooled book_seq sequence (allocation size 50),
+-- the sequence has to start past the ids created before the switch
+SELECT setval('book_seq', m.max_id)
+FROM (SELECT MAX(id) AS max_id FROM book) m
+WHERE m.max_id > (SELECT last_value FROM book_seq);
+
+-- version and updated_at were added to existing books, @Version needs a value to compare with
+UPDATE book SET version = 0 WHERE version IS NULL;
+UPDATE book SET updated_at = now() WHERE updated_at IS NULL;
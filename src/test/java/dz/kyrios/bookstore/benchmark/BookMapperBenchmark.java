@@ -0,0 +1,56 @@
+package dz.kyrios.bookstore.benchmark;
+
+import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.mapper.BookMapperImp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Mapping a whole listing page of entities to response DTOs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private final BookMapperImp bookMapper = new BookMapperImp();
+
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        User author = new User(1L, "kyrios", "kyrios", "secret");
+        books = new ArrayList<>(pageSize);
+        for (long i = 0; i < pageSize; i++) {
+            books.add(new Book(i, "Title " + i, "Description of book " + i, "/covers/" + i, "hash" + i, "image/jpeg", 9.99, author, null, null));
+        }
+    }
+
+    @Benchmark
+    public List<BookResponseDto> entityToResponse() {
+        List<BookResponseDto> page = new ArrayList<>(books.size());
+        for (Book book : books) {
+            page.add(bookMapper.entityToResponse(book));
+        }
+        return page;
+    }
+
+    // the overload used by BookService once the author pseudonym is known
+    @Benchmark
+    public List<BookResponseDto> entityToResponseWithAuthor() {
+        List<BookResponseDto> page = new ArrayList<>(books.size());
+        for (Book book : books) {
+            page.add(bookMapper.entityToResponse(book, "kyrios"));
+        }
+        return page;
+    }
+}
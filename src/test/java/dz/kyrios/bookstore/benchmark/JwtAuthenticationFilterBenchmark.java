@@ -0,0 +1,82 @@
+package dz.kyrios.bookstore.benchmark;
+
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.config.security.JwtAuthenticationFilter;
+import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.config.security.MyUserDetailsService;
+import dz.kyrios.bookstore.config.security.RateLimitFilter;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// What JwtAuthenticationFilter adds to every authenticated request: parse the bearer token,
+// build the principal and populate the security context
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    // uncached: the token signature is verified on every request
+    @Param({"0", "10000"})
+    private long verifiedTokenCacheSize;
+
+    private JwtAuthenticationFilter statelessFilter;
+
+    private JwtAuthenticationFilter userLookupFilter;
+
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(new SimpleMeterRegistry(), verifiedTokenCacheSize);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("kyrios"))
+                .thenReturn(Optional.of(new User(7L, "Kyrios", "kyrios", "secret")));
+        MyUserDetailsService userDetailsService = new MyUserDetailsService(userRepository, Duration.ofMinutes(10), 10_000);
+
+        RateLimitFilter rateLimitFilter = new RateLimitFilter(new SimpleMeterRegistry(), false, 0, 0, 0, 0, 0, 0, 0);
+        statelessFilter = new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, true, rateLimitFilter);
+        userLookupFilter = new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, false, rateLimitFilter);
+        AuthenticatedUser user = new AuthenticatedUser(7L, "kyrios", "Kyrios", null);
+        authorization = "Bearer " + jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList()));
+    }
+
+    @Benchmark
+    public Authentication statelessPrincipal() throws Exception {
+        return doFilter(statelessFilter);
+    }
+
+    // principal from the user cache, as with tokens issued without user claims
+    @Benchmark
+    public Authentication cachedUserLookup() throws Exception {
+        return doFilter(userLookupFilter);
+    }
+
+    private Authentication doFilter(JwtAuthenticationFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.addHeader("Authorization", authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,74 @@
+package dz.kyrios.bookstore.benchmark;
+
+import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import javax.crypto.SecretKey;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Per request cost of authenticating a bearer token in JwtAuthenticationFilter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "af60addca9ea3e3c099551e1b6576c9966dce0a33de879dd7e160f86dbd872ca236d6e9ee66fb6e30039fe7c345324a10f3d0741b0600fa7a45df4c6691eff4f4209767ed39f51e37717d8feecd5dd14fc34ebe619e6a29ae91d9ffe134cb5718bec0b3680d6ae7fc09e67763fe7c05d05d3ba69f47211163852633755b7f861132b0c98f8d7c1af9152d547408e676867a0a32fb525a4354180f5fb6b2dc23b5faa4155b8db63385f96259a90b6ee0e74a5b90a4f0f4fa96fafc296c64588b5c009b3829ae2e1d69a1cf7569b50a65fa553350495d18816f785f961c970c0a9cb9c8da25cc5e9fa4a3e9527a132d616b232d1ee21c3bf6dc8d9e3376e2e82c0";
+
+    private JwtTokenProvider uncachedProvider;
+
+    private JwtTokenProvider cachedProvider;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        uncachedProvider = new JwtTokenProvider(new SimpleMeterRegistry(), 0);
+        cachedProvider = new JwtTokenProvider(new SimpleMeterRegistry(), 10_000);
+        token = uncachedProvider.generateToken(
+                new UsernamePasswordAuthenticationToken("kyrios", null, Collections.emptyList()));
+    }
+
+    // previous filter behaviour: key decoded and parser built for validateToken, then again for getUsername
+    @Benchmark
+    public String legacyValidateThenGetUsername() {
+        SecretKey validationKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        Jwts.parser().verifyWith(validationKey).build().parse(token);
+        SecretKey usernameKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser().verifyWith(usernameKey).build().parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    @Benchmark
+    public String parseOnce() {
+        return uncachedProvider.parseToken(token).getSubject();
+    }
+
+    @Benchmark
+    public String parseOnceWithVerifiedTokenCache() {
+        return cachedProvider.parseToken(token).getSubject();
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return uncachedProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public String getUsername() {
+        return uncachedProvider.getUsername(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return uncachedProvider.generateToken(
+                new UsernamePasswordAuthenticationToken("kyrios", null, Collections.emptyList()));
+    }
+}
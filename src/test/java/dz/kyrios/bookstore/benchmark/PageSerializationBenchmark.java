@@ -0,0 +1,56 @@
+package dz.kyrios.bookstore.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dz.kyrios.bookstore.dto.BookResponseDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON body of the book listings, with the ObjectMapper defaults Spring Boot applies
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+
+    private Page<BookResponseDto> page;
+
+    private Slice<BookResponseDto> slice;
+
+    @Setup
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json().build().writer();
+        List<BookResponseDto> content = new ArrayList<>(pageSize);
+        for (long i = 0; i < pageSize; i++) {
+            content.add(new BookResponseDto(i, "Title " + i, "Description of book " + i, "/covers/" + i, "hash" + i, 9.99, "kyrios", null, null));
+        }
+        page = new PageImpl<>(content, PageRequest.of(3, pageSize), 100_000);
+        slice = new SliceImpl<>(content, PageRequest.of(3, pageSize), true);
+    }
+
+    @Benchmark
+    public byte[] page() throws Exception {
+        return writer.writeValueAsBytes(page);
+    }
+
+    // count=none listings
+    @Benchmark
+    public byte[] slice() throws Exception {
+        return writer.writeValueAsBytes(slice);
+    }
+}
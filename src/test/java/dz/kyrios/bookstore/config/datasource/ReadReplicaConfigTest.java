@@ -0,0 +1,101 @@
+package dz.kyrios.bookstore.config.datasource;
+
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The replica pool points to the test database too, the connections taken from each pool tell where the work ran
+@SpringBootTest(properties = {
+        "datasource.replica.enabled=true",
+        "datasource.replica.url=jdbc:h2:mem:bookstore;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "datasource.replica.lag-query=SELECT 0",
+        "datasource.replica.check-interval=1h"
+})
+@AutoConfigureMockMvc
+public class ReadReplicaConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Test
+    public void testReadsOnReplica_WritesOnPrimary() throws Exception {
+        User author = userRepository.save(new User(null, "replica", "replica", "secret"));
+        Book book = bookRepository.save(new Book(null, "Dune", "Desert planet", null, null, null, 10.0, author, null, null));
+        String token = "Bearer " + jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                AuthenticatedUser.fromEntity(author), null, Collections.emptyList()));
+
+        long primary = connections("primary");
+        long replica = connections("replica");
+        mockMvc.perform(MockMvcRequestBuilders.get("/books?keyword=Dune")).andExpect(status().isOk());
+        assertThat(connections("primary")).isEqualTo(primary);
+        assertThat(connections("replica")).isGreaterThan(replica);
+
+        // a cache load outlives the replica lag, it reads the primary
+        replica = connections("replica");
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/" + book.getId())).andExpect(status().isOk());
+        assertThat(connections("primary")).isGreaterThan(primary);
+        assertThat(connections("replica")).isEqualTo(replica);
+        primary = connections("primary");
+
+        replica = connections("replica");
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/books/" + book.getId())
+                        .header("Authorization", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Dune\",\"description\":\"Edited\",\"price\":12.5}"))
+                .andExpect(status().isOk());
+        assertThat(connections("primary")).isGreaterThan(primary);
+        assertThat(connections("replica")).isEqualTo(replica);
+    }
+
+    @Test
+    public void testListingQueries_OneTransactionPerCall() throws Exception {
+        User author = userRepository.save(new User(null, "single", "single", "secret"));
+        bookRepository.save(new Book(null, "Solaris", "Ocean planet", null, null, null, 10.0, author, null, null));
+        String token = "Bearer " + jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                AuthenticatedUser.fromEntity(author), null, Collections.emptyList()));
+
+        // page and estimated count, both run by the coalesced call
+        long replica = connections("replica");
+        mockMvc.perform(MockMvcRequestBuilders.get("/books?keyword=Solaris&count=estimated")).andExpect(status().isOk());
+        assertThat(connections("replica")).isEqualTo(replica + 1);
+
+        long primary = connections("primary");
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books?count=estimated")
+                        .header("Authorization", token))
+                .andExpect(status().isOk());
+        assertThat(connections("primary")).isEqualTo(primary + 1);
+    }
+
+    private long connections(String pool) {
+        return meterRegistry.get("hikaricp.connections.usage").tag("pool", pool).timer().count();
+    }
+}
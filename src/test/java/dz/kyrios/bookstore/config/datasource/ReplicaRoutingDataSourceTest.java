@@ -0,0 +1,108 @@
+package dz.kyrios.bookstore.config.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two in-memory databases stand in for the primary and its replica, each one knows its name
+public class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = database("routing_primary");
+
+    private final DataSource replica = database("routing_replica");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReplicaLagMonitor lagMonitor;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readWrite;
+
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    public void setUp() {
+        for (DataSource dataSource : new DataSource[]{primary, replica}) {
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            template.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20), lag_seconds DOUBLE)");
+            template.update("DELETE FROM node");
+        }
+        new JdbcTemplate(primary).update("INSERT INTO node VALUES ('primary', 0)");
+        new JdbcTemplate(replica).update("INSERT INTO node VALUES ('replica', 1)");
+
+        lagMonitor = new ReplicaLagMonitor(replica, "SELECT lag_seconds FROM node", Duration.ofSeconds(5), meterRegistry);
+        lagMonitor.check();
+        DataSource dataSource = ReadReplicaConfig.routingDataSource(primary, replica, lagMonitor);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    public void testReadOnlyTransaction_RunsOnReplica() {
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+        assertThat(nodeIn(readWrite)).isEqualTo("primary");
+        // no transaction, no read-only hint
+        assertThat(node()).isEqualTo("primary");
+        assertThat(meterRegistry.get("bookstore.datasource.replica.lag").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLaggingReplica_ReadsFallBackToPrimary() {
+        new JdbcTemplate(replica).update("UPDATE node SET lag_seconds = 30");
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isUsable()).isFalse();
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+
+        new JdbcTemplate(replica).update("UPDATE node SET lag_seconds = 2");
+        lagMonitor.check();
+
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testPrimaryReads_RunOnPrimary() {
+        assertThat(PrimaryReads.call(() -> nodeIn(readOnly))).isEqualTo("primary");
+        assertThat(PrimaryReads.call(() -> PrimaryReads.call(() -> nodeIn(readOnly)))).isEqualTo("primary");
+        assertThat(PrimaryReads.active()).isFalse();
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testUnreachableReplica_ReadsFallBackToPrimary() {
+        new JdbcTemplate(replica).execute("DROP TABLE node");
+        lagMonitor.check();
+
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+        assertThat(meterRegistry.get("bookstore.datasource.replica.usable").gauge().value()).isZero();
+        assertThat(meterRegistry.get("bookstore.datasource.replica.lag").gauge().value()).isNaN();
+    }
+
+    private String nodeIn(TransactionTemplate transaction) {
+        return transaction.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
@@ -0,0 +1,104 @@
+package dz.kyrios.bookstore.config.datasource;
+
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The replica is a second database, a copy of the primary taken before the write and never updated:
+// it reports no lag, so only the reads that must see the write are kept off it
+@SpringBootTest(properties = {
+        "datasource.replica.enabled=true",
+        "datasource.replica.url=" + StaleReplicaTest.REPLICA_URL,
+        "datasource.replica.lag-query=SELECT 0",
+        "datasource.replica.check-interval=1h"
+})
+@AutoConfigureMockMvc
+public class StaleReplicaTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:stale_replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Test
+    public void testReadsAfterWrite_DoNotSeeTheStaleReplica() throws Exception {
+        User author = userRepository.save(new User(null, "stale", "stale", "secret"));
+        Book book = bookRepository.save(new Book(null, "Dune", "Desert planet", null, null, null, 10.0, author, null, null));
+        String token = "Bearer " + jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                AuthenticatedUser.fromEntity(author), null, Collections.emptyList()));
+        copyPrimaryToReplica();
+        // both caches hold the book before the write
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/" + book.getId())).andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=50")).andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/books/" + book.getId())
+                        .header("Authorization", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Dune\",\"description\":\"Edited\",\"price\":12.5}"))
+                .andExpect(status().isOk());
+
+        // a plain read-only read still runs on the replica, which missed the write
+        assertThat(bookRepository.findViewById(book.getId()).orElseThrow().getDescription()).isEqualTo("Desert planet");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/" + book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Edited"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].description", hasItem("Edited")));
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books/" + book.getId())
+                        .header("Authorization", token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Edited"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books")
+                        .header("Authorization", token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].description").value("Edited"));
+    }
+
+    private void copyPrimaryToReplica() {
+        String script = "target/stale-replica.sql";
+        new JdbcTemplate(primaryDataSource).execute("SCRIPT TO '" + script + "'");
+        JdbcDataSource replica = new JdbcDataSource();
+        replica.setURL(REPLICA_URL);
+        replica.setUser("sa");
+        JdbcTemplate replicaTemplate = new JdbcTemplate(replica);
+        replicaTemplate.execute("DROP ALL OBJECTS");
+        replicaTemplate.execute("RUNSCRIPT FROM '" + script + "'");
+    }
+}
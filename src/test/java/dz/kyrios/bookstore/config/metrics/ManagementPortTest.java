@@ -0,0 +1,41 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The metrics are scraped anonymously, on the management port only
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "management.server.port=0",
+        "management.endpoints.web.exposure.include=health,prometheus"
+})
+@AutoConfigureObservability
+public class ManagementPortTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    public void testPrometheus_OnlyOnManagementPort() {
+        ResponseEntity<String> scrape = restTemplate.getForEntity("http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody()).contains("jvm_memory_used_bytes");
+
+        ResponseEntity<String> app = restTemplate.getForEntity("http://localhost:" + serverPort + "/actuator/prometheus", String.class);
+        assertThat(app.getStatusCode()).isIn(HttpStatus.UNAUTHORIZED, HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,56 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=prometheus",
+        "management.observations.annotations.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Test
+    public void testPrometheusEndpoint() throws Exception {
+        User author = userRepository.save(new User(null, "metrics", "metrics", "secret"));
+        Book book = bookRepository.save(new Book(null, "Dune", "Desert planet", null, null, null, 10.0, author, null, null));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/" + book.getId()))
+                .andExpect(status().isOk());
+        String scrape = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // one query for the book and its author
+        assertThat(scrape).contains("bookstore_sql_statements_sum{method=\"GET\",uri=\"/books/{id}\"} 1.0");
+        assertThat(scrape).contains("http_server_requests_seconds_count{")
+                .contains("bookstore_book_service_seconds_count{")
+                .contains("method=\"getBookByIdPublic\"")
+                .contains("hibernate_entities_loads_total")
+                .contains("hikaricp_connections_active")
+                .contains("bookstore_jwt_parse_seconds_count{outcome=\"verified\"}");
+    }
+}
@@ -0,0 +1,22 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Asserts the exact number of SQL statements a call runs on the current thread (MockMvc requests run on it).
+// @SpringBootTest contexts already have the SqlStatementCounter bean, slices need @Import(SqlStatementConfig.class).
+public final class SqlStatementAssertions {
+
+    private SqlStatementAssertions() {
+    }
+
+    public static <T> T assertStatements(SqlStatementCounter counter, long expected, Callable<T> call) throws Exception {
+        counter.reset();
+        T result = call.call();
+        assertThat(counter.count())
+                .as("SQL statements, ran:%n%s", String.join("\n", counter.statements()))
+                .isEqualTo(expected);
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import dz.kyrios.bookstore.service.cache.PublicListingCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static dz.kyrios.bookstore.config.metrics.SqlStatementAssertions.assertStatements;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Statements run per endpoint, a change here is a change of the queries behind the endpoint
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SqlStatementBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementCounter counter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private PublicListingCache publicListingCache;
+
+    private User author;
+
+    private final List<Book> books = new ArrayList<>();
+
+    private String token;
+
+    @BeforeEach
+    public void setUp() {
+        author = userRepository.save(new User(null, "budget", "budget", "secret"));
+        for (int i = 0; i < 5; i++) {
+            books.add(bookRepository.save(new Book(null, "Budget " + i, "Statements", null, null, null, 10.0, author, null, null)));
+        }
+        AuthenticatedUser principal = AuthenticatedUser.fromEntity(author);
+        token = "Bearer " + jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // by id, the saved instances are stale once a test updated them
+        bookRepository.deleteAllById(books.stream().map(Book::getId).toList());
+        userRepository.delete(author);
+    }
+
+    @Test
+    public void testPublicBookById() throws Exception {
+        String uri = "/books/" + books.get(0).getId();
+
+        assertStatements(counter, 1, () -> mockMvc.perform(MockMvcRequestBuilders.get(uri)).andExpect(status().isOk()));
+        // served from the public book cache
+        assertStatements(counter, 0, () -> mockMvc.perform(MockMvcRequestBuilders.get(uri)).andExpect(status().isOk()));
+    }
+
+    @Test
+    public void testPublicListing() throws Exception {
+        // listing state (validators and total), page
+        String eTag = assertStatements(counter, 2, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=2&keyword=Budget"))
+                .andExpect(status().isOk())).andReturn().getResponse().getHeader("ETag");
+        // keyset page, validated by its body
+        assertStatements(counter, 1, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?cursor=&size=2"))
+                .andExpect(status().isOk()));
+        // page without count
+        assertStatements(counter, 1, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=2&keyword=Budget&count=none"))
+                .andExpect(status().isOk()));
+        // listing state only
+        assertStatements(counter, 1, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=2&keyword=Budget")
+                .header("If-None-Match", eTag)).andExpect(status().isNotModified()));
+    }
+
+    @Test
+    public void testPublicListing_HotPageCached() throws Exception {
+        // the books of setUp were saved through the repository, no change event
+        publicListingCache.invalidateAll();
+
+        String eTag = assertStatements(counter, 2, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=2"))
+                .andExpect(status().isOk())).andReturn().getResponse().getHeader("ETag");
+        assertStatements(counter, 0, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.content.length()").value(2)));
+        assertStatements(counter, 0, () -> mockMvc.perform(MockMvcRequestBuilders.get("/books?page=0&size=2")
+                .header("If-None-Match", eTag)).andExpect(status().isNotModified()));
+    }
+
+    @Test
+    public void testAuthorListing() throws Exception {
+        assertStatements(counter, 2, () -> mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books?page=0&size=2")
+                .header("Authorization", token)).andExpect(status().isOk()));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        String uri = "/api/v1/books/" + books.get(1).getId();
+
+        // load, update
+        assertStatements(counter, 2, () -> mockMvc.perform(MockMvcRequestBuilders.put(uri)
+                        .header("Authorization", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Budget\",\"description\":\"Edited\",\"price\":12.5}"))
+                .andExpect(status().isOk()));
+    }
+}
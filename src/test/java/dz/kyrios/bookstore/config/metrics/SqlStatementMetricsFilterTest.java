@@ -0,0 +1,56 @@
+package dz.kyrios.bookstore.config.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlStatementMetricsFilterTest {
+
+    private final SqlStatementCounter counter = new SqlStatementCounter();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final SqlStatementMetricsFilter filter =
+            new SqlStatementMetricsFilter(counter, meterRegistry, 10, 3, List.of("/api/v1/books/import"));
+
+    @Test
+    public void testWithinBudget_RecordedOnly() throws Exception {
+        run("/books/{id}", "select b from book b where b.id=?", 1);
+
+        assertThat(meterRegistry.get("bookstore.sql.statements").tag("uri", "/books/{id}").summary().totalAmount()).isEqualTo(1);
+        assertThat(meterRegistry.find("bookstore.sql.budget.exceeded").counter()).isNull();
+    }
+
+    @Test
+    public void testRepeatedStatement_ReportedAsNPlusOne() throws Exception {
+        run("/books", "select u from users u where u.id=?", 4);
+
+        assertThat(meterRegistry.get("bookstore.sql.budget.exceeded").tag("uri", "/books").tag("reason", "repeated")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOverBudget_ExcludedUriIgnored() throws Exception {
+        run("/api/v1/books/import", "insert into book values (?)", 50);
+        run("/api/v1/books", "select b from book b where b.id=?", 11);
+
+        assertThat(meterRegistry.find("bookstore.sql.budget.exceeded").tag("uri", "/api/v1/books/import").counter()).isNull();
+        assertThat(meterRegistry.get("bookstore.sql.budget.exceeded").tag("uri", "/api/v1/books").counter().count()).isEqualTo(1);
+    }
+
+    private void run(String pattern, String sql, int times) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", pattern);
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            for (int i = 0; i < times; i++) {
+                counter.inspect(sql);
+            }
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        });
+    }
+}
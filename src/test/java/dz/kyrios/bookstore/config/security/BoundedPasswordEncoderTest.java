@@ -0,0 +1,72 @@
+package dz.kyrios.bookstore.config.security;
+
+import dz.kyrios.bookstore.config.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testHashesOnThePool() {
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), meterRegistry, 1, 4, false)) {
+            String encoded = encoder.encode("secret");
+
+            assertThat(encoder.matches("secret", encoded)).isTrue();
+            assertThat(encoder.matches("other", encoded)).isFalse();
+            assertThat(meterRegistry.get("bookstore.password.hash").tag("operation", "matches").timer().count()).isEqualTo(2);
+            assertThat(meterRegistry.get("bookstore.password.hash").tag("operation", "encode").timer().count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testQueueFull_RejectedAtOnce() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.matches(any(), any())).thenAnswer(invocation -> {
+            hashing.countDown();
+            release.await();
+            return true;
+        });
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slow, meterRegistry, 1, 1, false)) {
+            CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> encoder.matches("a", "hash"));
+            assertThat(hashing.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> encoder.matches("b", "hash"));
+            while (meterRegistry.get("bookstore.password.hash.queued").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            assertThatThrownBy(() -> encoder.matches("c", "hash")).isInstanceOf(PasswordHashingBusyException.class);
+            assertThat(meterRegistry.get("bookstore.password.hash.rejected").counter().count()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void testUpgradeEncoding_OnlyWithRehash() {
+        String cost4 = new BCryptPasswordEncoder(4).encode("secret");
+        try (BoundedPasswordEncoder keep = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), meterRegistry, 1, 1, false);
+             BoundedPasswordEncoder rehash = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), meterRegistry, 1, 1, true)) {
+            assertThat(keep.upgradeEncoding(cost4)).isFalse();
+            assertThat(rehash.upgradeEncoding(cost4)).isTrue();
+            assertThat(rehash.upgradeEncoding(rehash.encode("secret"))).isFalse();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package dz.kyrios.bookstore.config.security;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthenticationFilterTest {
+
+    private final JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(new SimpleMeterRegistry(), 0);
+
+    private final MyUserDetailsService userDetailsService = mock(MyUserDetailsService.class);
+
+    // books: 2 requests, then one every 10s
+    private final RateLimitFilter rateLimitFilter = new RateLimitFilter(new SimpleMeterRegistry(), true, 1000, 0, 0, 2, 0.1, 0, 0);
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testStatelessPrincipal_NoUserLookup() throws Exception {
+        AuthenticatedUser user = new AuthenticatedUser(7L, "kyrios", "Kyrios", null);
+        String token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList()));
+
+        doFilter(new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, true, rateLimitFilter), token);
+
+        AuthenticatedUser principal = (AuthenticatedUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertThat(principal.getId()).isEqualTo(7L);
+        assertThat(principal.getUsername()).isEqualTo("kyrios");
+        assertThat(principal.getPseudonym()).isEqualTo("Kyrios");
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    public void testTokenWithoutUserClaims_FallsBackToLookup() throws Exception {
+        String token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken("kyrios", null, Collections.emptyList()));
+        AuthenticatedUser user = new AuthenticatedUser(7L, "kyrios", "Kyrios", null);
+        when(userDetailsService.loadPrincipal("kyrios")).thenReturn(user);
+
+        doFilter(new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, true, rateLimitFilter), token);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isSameAs(user);
+    }
+
+    @Test
+    public void testRejectedTokens_CountedPerAddress() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, true, rateLimitFilter);
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> doFilter(filter, "forged")).isInstanceOf(JwtException.class);
+        }
+        MockHttpServletResponse rejected = doFilter(filter, "forged");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isNotNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    private MockHttpServletResponse doFilter(JwtAuthenticationFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,58 @@
+package dz.kyrios.bookstore.config.security;
+
+import dz.kyrios.bookstore.dto.LoginDto;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.RefreshTokenRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import dz.kyrios.bookstore.service.AuthService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "security.password.rehash-on-login=true",
+        "security.password.bcrypt-cost=5"
+})
+public class PasswordRehashTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private User user;
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        // the refresh tokens issued by the logins
+        refreshTokenRepository.deleteAll();
+        userRepository.delete(user);
+    }
+
+    @Test
+    public void testLogin_RehashesToConfiguredCost() {
+        user = userRepository.save(new User(null, "rehash", "rehash", new BCryptPasswordEncoder(4).encode("secret")));
+        LoginDto loginDto = new LoginDto();
+        loginDto.setUsername("rehash");
+        loginDto.setPassword("secret");
+
+        assertThat(authService.login(loginDto).getAccessToken()).isNotBlank();
+
+        String stored = userRepository.findByUsername("rehash").orElseThrow().getPassword();
+        assertThat(stored).startsWith("$2a$05$");
+        assertThat(new BCryptPasswordEncoder().matches("secret", stored)).isTrue();
+        // the new hash does not need another upgrade
+        assertThat(authService.login(loginDto).getAccessToken()).isNotBlank();
+        assertThat(userRepository.findByUsername("rehash").orElseThrow().getPassword()).isEqualTo(stored);
+    }
+}
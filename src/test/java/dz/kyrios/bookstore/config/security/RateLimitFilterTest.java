@@ -0,0 +1,91 @@
+package dz.kyrios.bookstore.config.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // public: 2 requests, then one every 10s; books: 1 request; auth not limited
+    private final RateLimitFilter filter = new RateLimitFilter(meterRegistry, true, 1000, 2, 0.1, 1, 0.1, 0, 0);
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testOverLimit_429WithRetryAfter() throws Exception {
+        assertThat(doFilter("GET", "/books", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(doFilter("GET", "/books/7", "10.0.0.1").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse rejected = doFilter("GET", "/books/7/cover", "10.0.0.1");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(Long.parseLong(rejected.getHeader("Retry-After"))).isBetween(1L, 10L);
+        assertThat(meterRegistry.get("bookstore.rate.limit.rejected").tag("group", "public").counter().count()).isEqualTo(1);
+        // other clients have their own bucket
+        assertThat(doFilter("GET", "/books", "10.0.0.2").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void testAuthenticatedUser_LimitedPerUserAndGroup() throws Exception {
+        authenticate(7L);
+        assertThat(doFilter("POST", "/api/v1/books", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(doFilter("PUT", "/api/v1/books/3", "10.0.0.2").getStatus()).isEqualTo(429);
+        // separate bucket for the public routes
+        assertThat(doFilter("GET", "/books", "10.0.0.2").getStatus()).isEqualTo(200);
+
+        authenticate(8L);
+        assertThat(doFilter("PUT", "/api/v1/books/3", "10.0.0.2").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void testUnlimitedRoutes() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            assertThat(doFilter("POST", "/api/auth/login", "10.0.0.1").getStatus()).isEqualTo(200);
+            assertThat(doFilter("GET", "/actuator/health", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+        assertThat(meterRegistry.find("bookstore.rate.limit.rejected").tag("group", "auth").counter()).isNull();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        RateLimitFilter disabled = new RateLimitFilter(meterRegistry, false, 1000, 1, 0.1, 1, 0.1, 1, 0.1);
+
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            disabled.doFilter(request("GET", "/books", "10.0.0.1"), response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(200);
+        }
+    }
+
+    private void authenticate(Long userId) {
+        AuthenticatedUser user = new AuthenticatedUser(userId, "user" + userId, "User", null);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList()));
+    }
+
+    private MockHttpServletResponse doFilter(String method, String uri, String remoteAddr) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(method, uri, remoteAddr), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
@@ -0,0 +1,60 @@
+package dz.kyrios.bookstore.config.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(3, 1, 0);
+
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isEqualTo(SECOND);
+        // one token back per second
+        assertThat(bucket.tryConsume(SECOND / 2)).isEqualTo(SECOND / 2);
+        assertThat(bucket.tryConsume(SECOND)).isZero();
+        assertThat(bucket.tryConsume(SECOND)).isPositive();
+        // never more than the capacity, however long it was idle
+        long later = 100 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryConsume(later)).isZero();
+        }
+        assertThat(bucket.tryConsume(later)).isPositive();
+    }
+
+    @Test
+    public void testConcurrentConsumers_NoTokenGrantedTwice() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 0.001, 0);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    if (bucket.tryConsume(0) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(granted.get()).isEqualTo(1000);
+    }
+}
@@ -1,6 +1,10 @@
 package dz.kyrios.bookstore.controller;
 
+import dz.kyrios.bookstore.config.exception.InvalidRefreshTokenException;
+import dz.kyrios.bookstore.config.exception.PasswordHashingBusyException;
 import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.config.security.MyUserDetailsService;
+import dz.kyrios.bookstore.dto.AuthResponseDto;
 import dz.kyrios.bookstore.dto.LoginDto;
 import dz.kyrios.bookstore.service.AuthService;
 import org.junit.jupiter.api.Test;
@@ -18,6 +22,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -34,6 +39,9 @@ public class AuthControllerTest {
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
+    @MockBean
+    private MyUserDetailsService userDetailsService;
+
     @MockBean
     private AuthenticationManager authenticationManager;
 
@@ -55,14 +63,53 @@ public class AuthControllerTest {
         loginDto.setUsername("username");
         loginDto.setPassword("password");
 
-        when(authService.login(loginDto)).thenReturn("mockToken");
+        AuthResponseDto response = new AuthResponseDto();
+        response.setAccessToken("mockToken");
+        response.setRefreshToken("mockRefreshToken");
+        when(authService.login(loginDto)).thenReturn(response);
 
         mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"username\":\"username\",\"password\":\"password\"}"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.accessToken").value("mockToken"));
+                .andExpect(jsonPath("$.accessToken").value("mockToken"))
+                .andExpect(jsonPath("$.refreshToken").value("mockRefreshToken"));
     }
-}
 
+    @Test
+    public void testRefresh_Success() throws Exception {
+        AuthResponseDto response = new AuthResponseDto();
+        response.setAccessToken("newToken");
+        response.setRefreshToken("newRefreshToken");
+        when(authService.refresh("refreshToken")).thenReturn(response);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refreshToken\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accessToken").value("newToken"))
+                .andExpect(jsonPath("$.refreshToken").value("newRefreshToken"));
+    }
+
+    @Test
+    public void testRefresh_InvalidToken() throws Exception {
+        when(authService.refresh("reused")).thenThrow(new InvalidRefreshTokenException("Refresh token already used"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"reused\"}"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void testLogin_HashingBusy() throws Exception {
+        when(authService.login(any())).thenThrow(new PasswordHashingBusyException("busy"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"username\",\"password\":\"password\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+}
@@ -1,11 +1,21 @@
 package dz.kyrios.bookstore.controller;
 
 import dz.kyrios.bookstore.config.exception.AuthorizationDeniedException;
+import dz.kyrios.bookstore.config.exception.ExportBusyException;
 import dz.kyrios.bookstore.config.exception.NotFoundException;
 import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.config.security.MyUserDetailsService;
+import dz.kyrios.bookstore.dto.BookImportErrorDto;
+import dz.kyrios.bookstore.dto.BookImportResultDto;
 import dz.kyrios.bookstore.dto.BookRequestDto;
 import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.dto.CursorPageDto;
 import dz.kyrios.bookstore.service.BookService;
+import dz.kyrios.bookstore.service.bulk.BookExportService;
+import dz.kyrios.bookstore.service.bulk.BookImportService;
+import dz.kyrios.bookstore.service.bulk.ExportFormat;
+import dz.kyrios.bookstore.service.bulk.ExportScope;
+import dz.kyrios.bookstore.service.pagination.CountMode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +24,8 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -23,7 +35,11 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -38,9 +54,18 @@ public class BookControllerTest {
     @MockBean
     private BookService bookService;
 
+    @MockBean
+    private BookImportService bookImportService;
+
+    @MockBean
+    private BookExportService bookExportService;
+
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
+    @MockBean
+    private MyUserDetailsService userDetailsService;
+
     @Test
     @WithMockUser(username = "kyrios")
     public void testGetBookById_Success() throws Exception {
@@ -90,7 +115,7 @@ public class BookControllerTest {
                 2
         );
 
-        when(bookService.getBooksWithSearchByUser("", PageRequest.of(0, 10)))
+        when(bookService.getBooksWithSearchByUser("", PageRequest.of(0, 10), CountMode.EXACT))
                 .thenReturn(mockPage);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books")
@@ -103,6 +128,53 @@ public class BookControllerTest {
                 .andExpect(jsonPath("$.content[1].id").value(2));
     }
 
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testGetAllBooks_NoCount() throws Exception {
+        BookResponseDto book1 = new BookResponseDto();
+        book1.setId(1L);
+
+        Slice<BookResponseDto> mockSlice = new SliceImpl<>(Arrays.asList(book1), PageRequest.of(0, 1), true);
+
+        when(bookService.getBooksWithSearchByUser("", PageRequest.of(0, 1), CountMode.NONE))
+                .thenReturn(mockSlice);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books")
+                        .param("size", "1")
+                        .param("count", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.last").value(false))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testGetAllBooks_InvalidCountMode() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books")
+                        .param("count", "sometimes"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testGetAllBooks_Cursor() throws Exception {
+        BookResponseDto book1 = new BookResponseDto();
+        book1.setId(11L);
+
+        CursorPageDto<BookResponseDto> mockPage = new CursorPageDto<>(Arrays.asList(book1), 1, "next-cursor");
+
+        when(bookService.getBooksAfterCursorByUser("", "", 1)).thenReturn(mockPage);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books")
+                        .param("size", "1")
+                        .param("cursor", ""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$.content[0].id").value(11))
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+    }
+
     @Test
     @WithMockUser(username = "kyrios")
     public void testSaveBook_Created() throws Exception {
@@ -139,4 +211,58 @@ public class BookControllerTest {
                 .andExpect(jsonPath("$.author").value("kyrios"))
                 .andExpect(jsonPath("$.price").value(29.99));
     }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testImportBooks_ReportsResult() throws Exception {
+        BookImportResultDto result = new BookImportResultDto(2, 1, 1, 10, 200.0,
+                List.of(new BookImportErrorDto(2, "Title is required")));
+        when(bookImportService.importBooks(any(), eq(BookImportService.TEXT_CSV))).thenReturn(result);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/books/import")
+                        .contentType("text/csv")
+                        .content("title,description,price\nDune,Desert planet,9.99\n,No title,1\n")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("Title is required"));
+    }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testImportBooks_UnsupportedFormat() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/books/import")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content("<books/>")
+                        .with(csrf()))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testExportAll_Csv() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books/export/all").param("format", "csv"))
+                .andExpect(status().isOk());
+
+        verify(bookExportService).writeAttachment(eq(ExportFormat.CSV), eq(ExportScope.ALL), any());
+    }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testExportAll_InvalidFormat() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books/export/all").param("format", "xml"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    @WithMockUser(username = "kyrios")
+    public void testExportAll_Busy() throws Exception {
+        when(bookExportService.writeAttachment(eq(ExportFormat.NDJSON), eq(ExportScope.ALL), any()))
+                .thenThrow(new ExportBusyException("Too many exports running, try again later"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/books/export/all"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
 }
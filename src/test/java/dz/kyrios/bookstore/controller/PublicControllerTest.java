@@ -0,0 +1,235 @@
+package dz.kyrios.bookstore.controller;
+
+import dz.kyrios.bookstore.config.exception.NotFoundException;
+import dz.kyrios.bookstore.config.security.JwtTokenProvider;
+import dz.kyrios.bookstore.config.security.MyUserDetailsService;
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.dto.CursorPageDto;
+import dz.kyrios.bookstore.service.BookService;
+import dz.kyrios.bookstore.service.cache.PublicListingCache;
+import dz.kyrios.bookstore.service.cache.SerializedListing;
+import dz.kyrios.bookstore.service.pagination.CountMode;
+import dz.kyrios.bookstore.service.storage.CoverFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(PublicController.class)
+public class PublicControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BookService bookService;
+
+    @MockBean
+    private PublicListingCache publicListingCache;
+
+    @MockBean
+    private JwtTokenProvider jwtTokenProvider;
+
+    @MockBean
+    private MyUserDetailsService userDetailsService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path file = Files.write(uploadDir.resolve("cover.png"), "0123456789".getBytes());
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        when(bookService.getCover(1L, 0)).thenReturn(new CoverFile(file, 10, lastModified, "\"abc\"", MediaType.IMAGE_PNG));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetBookById_Validators() throws Exception {
+        BookResponseDto book = new BookResponseDto(5L, "Dune", "Desert planet", null, null, 10.0, "kyrios",
+                3L, Instant.parse("2024-05-01T10:15:30Z"));
+        when(bookService.getBookByIdPublic(5L)).thenReturn(book);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"5-3\""))
+                .andExpect(header().string("Last-Modified", "Wed, 01 May 2024 10:15:30 GMT"))
+                .andExpect(header().string("Cache-Control", "no-cache, public"))
+                .andExpect(jsonPath("$.title").value("Dune"))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/5").header("If-None-Match", "W/\"5-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/5").header("If-None-Match", "W/\"5-2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetAllBooks_NotModifiedSkipsPageQueries() throws Exception {
+        BookListingState state = mock(BookListingState.class);
+        when(state.getCount()).thenReturn(2L);
+        when(state.getVersions()).thenReturn(4L);
+        when(state.getLastModified()).thenReturn(1714558530L);
+        when(bookService.getListingState("dune")).thenReturn(state);
+        PageRequest pageable = PageRequest.of(0, 10);
+        when(bookService.getBooksWithSearch("dune", pageable, CountMode.EXACT, 2L))
+                .thenReturn(new PageImpl<>(List.of(new BookResponseDto()), pageable, 2));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("keyword", "dune"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"2-4-1714558530\""))
+                .andExpect(header().doesNotExist("Last-Modified"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("keyword", "dune")
+                        .header("If-None-Match", "W/\"2-4-1714558530\""))
+                .andExpect(status().isNotModified());
+        verify(bookService, times(1)).getBooksWithSearch("dune", pageable, CountMode.EXACT, 2L);
+
+        // the latest change survives a removal, a date alone never answers 304
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("keyword", "dune")
+                        .header("If-Modified-Since", "Wed, 01 May 2024 10:15:30 GMT"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetAllBooks_KeysetPageValidatedByBody() throws Exception {
+        when(bookService.getBooksAfterCursor("dune", "", 10))
+                .thenReturn(new CursorPageDto<>(List.of(new BookResponseDto()), 1, null));
+
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/books").param("keyword", "dune").param("cursor", ""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().doesNotExist("Last-Modified"))
+                .andExpect(jsonPath("$.size").value(1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(eTag).startsWith("W/\"");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("keyword", "dune").param("cursor", "")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        verify(bookService, never()).getListingState(anyString());
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetAllBooks_CachedPageWrittenAsIs() throws Exception {
+        byte[] json = "{\"content\":[]}".getBytes();
+        byte[] gzip = {31, -117, 8, 0};
+        when(publicListingCache.covers("", null, CountMode.EXACT, 0, 10)).thenReturn(true);
+        when(publicListingCache.get(0, 10)).thenReturn(new SerializedListing("W/\"0-null-null\"", json, gzip));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").header("Accept-Encoding", "gzip, deflate, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(header().string("ETag", "W/\"0-null-null\""))
+                .andExpect(content().bytes(gzip));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").header("Accept-Encoding", "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().contentType("application/json"))
+                .andExpect(content().bytes(json));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").header("If-None-Match", "W/\"0-null-null\""))
+                .andExpect(status().isNotModified());
+
+        verify(bookService, never()).getListingState(anyString());
+        verify(publicListingCache, never()).get(anyInt(), eq(20));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetCover_Success() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/1/cover"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetCover_NotModified() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/1/cover")
+                        .header("If-None-Match", "\"abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetCover_Range() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/1/cover")
+                        .header("Range", "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetCover_Thumbnail() throws Exception {
+        Path file = Files.write(uploadDir.resolve("abc-w200.jpeg"), "thumb".getBytes());
+        when(bookService.getCover(1L, 200)).thenReturn(new CoverFile(file, 5, Instant.now(), "\"abc-w200\"", MediaType.IMAGE_JPEG));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/1/cover").param("w", "200"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(header().string("ETag", "\"abc-w200\""))
+                .andExpect(content().string("thumb"));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetCoverByHash_Immutable() throws Exception {
+        Path file = Files.write(uploadDir.resolve("blob"), "0123456789".getBytes());
+        when(bookService.getCoverByHash("abc", 0)).thenReturn(new CoverFile(file, 10, Instant.now(), "\"abc\"", MediaType.IMAGE_PNG));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/covers/abc"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    @WithMockUser
+    public void testGetCover_NotFound() throws Exception {
+        when(bookService.getCover(2L, 0)).thenThrow(new NotFoundException(2L, "Cover image not found for book with id:"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/2/cover"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,329 @@
+package dz.kyrios.bookstore.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// End-to-end load test: boots the whole application on the PostgreSQL-mode H2 database, seeds a catalogue
+// and a set of authors, then drives a weighted mix of public and authenticated traffic over real HTTP.
+// Latency percentiles and throughput per endpoint are written to target/load-test/report.json and compared
+// with the baseline recorded on the same machine, .loadtest/baseline.json by default, never committed: numbers
+// from other hardware mean nothing here. Run with: mvn -Pload-test verify
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.jpa.show-sql=false",
+                "file.upload-dir=target/load-test/uploads"
+        })
+public class BookstoreLoadIT {
+
+    private static final Logger log = LoggerFactory.getLogger(BookstoreLoadIT.class);
+
+    private static final String PASSWORD = "load-test-password";
+
+    private static final String[] WORDS = {"dune", "foundation", "empire", "night", "river", "shadow", "garden",
+            "winter", "stone", "glass", "ocean", "silver", "forest", "city", "machine", "dragon"};
+
+    private final int books = Integer.getInteger("loadtest.books", 20_000);
+    private final int users = Integer.getInteger("loadtest.users", 50);
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+    private final Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10));
+    private final Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 30));
+    private final double maxRegression = Double.parseDouble(System.getProperty("loadtest.max-regression", "0.25"));
+    private final double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+    private final Path baselineFile = Path.of(System.getProperty("loadtest.baseline", ".loadtest/baseline.json"));
+    private final Path reportFile = Path.of(System.getProperty("loadtest.report", "target/load-test/report.json"));
+    private final boolean updateBaseline = Boolean.getBoolean("loadtest.update-baseline");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    private final List<byte[]> covers = new ArrayList<>();
+
+    private long minBookId;
+
+    private long maxBookId;
+
+    private final List<Long> coveredBookIds = new ArrayList<>();
+
+    @Test
+    public void mixedTraffic() throws Exception {
+        seed();
+
+        run(warmup);
+        LoadReport report = LoadReport.of(run(duration), duration.toMillis() / 1000.0, concurrency);
+
+        report.write(reportFile);
+        log.info("Load test results:\n{}", report.toTable());
+
+        report.getEndpoints().forEach((endpoint, stats) ->
+                assertThat((double) stats.getErrors() / stats.getRequests())
+                        .as("%s error rate", endpoint)
+                        .isLessThanOrEqualTo(maxErrorRate));
+        if (updateBaseline) {
+            report.write(baselineFile);
+            return;
+        }
+        assertThat(Files.exists(baselineFile))
+                .as("no baseline at %s, record one on this machine with -Dloadtest.update-baseline=true", baselineFile)
+                .isTrue();
+        assertThat(report.regressionsAgainst(LoadReport.read(baselineFile), maxRegression))
+                .as("regressions against %s", baselineFile)
+                .isEmpty();
+    }
+
+    private void seed() throws Exception {
+        // every author shares one password so seeding does not pay for thousands of hashes
+        String encoded = passwordEncoder.encode(PASSWORD);
+        List<User> authors = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            authors.add(new User(null, "author-" + i, "author-" + i, encoded));
+        }
+        authors = userRepository.saveAll(authors);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Book> batch = new ArrayList<>(1000);
+        for (int i = 0; i < books; i++) {
+            String title = word(random) + " " + word(random) + " " + i;
+            batch.add(new Book(null, title, "A story of " + word(random) + " and " + word(random),
+                    null, null, null, random.nextInt(100, 10_000) / 100.0, authors.get(i % users), null, null));
+            if (batch.size() == 1000 || i == books - 1) {
+                List<Book> saved = bookRepository.saveAll(batch);
+                if (minBookId == 0) {
+                    minBookId = saved.get(0).getId();
+                }
+                maxBookId = saved.get(saved.size() - 1).getId();
+                batch.clear();
+            }
+        }
+
+        for (int i = 0; i < 64; i++) {
+            covers.add(coverImage(i));
+        }
+        String token = login("author-0");
+        for (int i = 0; i < 20; i++) {
+            HttpResponse<String> response = send(createBook(token));
+            assertThat(response.statusCode()).isEqualTo(201);
+            coveredBookIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+        }
+    }
+
+    private Map<String, LoadReport.Samples> run(Duration length) throws Exception {
+        long deadline = System.nanoTime() + length.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Map<String, LoadReport.Samples>>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                String username = "author-" + (i % users);
+                workers.add(executor.submit(() -> new Worker(username).run(deadline)));
+            }
+            Map<String, LoadReport.Samples> merged = new TreeMap<>();
+            for (Future<Map<String, LoadReport.Samples>> worker : workers) {
+                worker.get().forEach((endpoint, samples) ->
+                        merged.computeIfAbsent(endpoint, e -> new LoadReport.Samples()).addAll(samples));
+            }
+            return merged;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // one virtual user: logs in once, then picks weighted requests until the deadline, the books it
+    // creates are the only ones it edits or deletes
+    private class Worker {
+
+        private final String username;
+
+        private final Map<String, LoadReport.Samples> samples = new TreeMap<>();
+
+        private final Deque<Long> ownBooks = new ArrayDeque<>();
+
+        private String token;
+
+        Worker(String username) {
+            this.username = username;
+        }
+
+        Map<String, LoadReport.Samples> run(long deadline) throws Exception {
+            token = login(username);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                int pick = random.nextInt(100);
+                if (pick < 25) {
+                    call("GET /books?keyword", () -> get("/books?size=20&keyword=" + word(random), null));
+                } else if (pick < 35) {
+                    call("GET /books?page", () -> get("/books?size=20&page=" + random.nextInt(50), null));
+                } else if (pick < 60) {
+                    call("GET /books/{id}", () -> get("/books/" + random.nextLong(minBookId, maxBookId + 1), null));
+                } else if (pick < 65) {
+                    Long id = coveredBookIds.get(random.nextInt(coveredBookIds.size()));
+                    call("GET /books/{id}/cover", () -> get("/books/" + id + "/cover?w=200", null));
+                } else if (pick < 70) {
+                    call("POST /api/auth/login", () -> loginRequest(username));
+                } else if (pick < 80) {
+                    call("GET /api/v1/books", () -> get("/api/v1/books?size=20", token));
+                } else if (pick < 88 || ownBooks.isEmpty()) {
+                    HttpResponse<String> response = call("POST /api/v1/books", () -> createBook(token));
+                    if (response.statusCode() == 201) {
+                        ownBooks.add(objectMapper.readTree(response.body()).get("id").asLong());
+                    }
+                } else if (pick < 93) {
+                    Long id = ownBooks.peekLast();
+                    call("PUT /api/v1/books/{id}", () -> updateBook(token, id));
+                } else if (pick < 97) {
+                    Long id = ownBooks.peekLast();
+                    call("PUT /api/v1/books/{id}/cover", () -> multipart("PUT", "/api/v1/books/" + id + "/update-cover-image", token, Map.of()));
+                } else {
+                    Long id = ownBooks.pollFirst();
+                    call("DELETE /api/v1/books/{id}", () -> authorized(token, "/api/v1/books/" + id).DELETE().build());
+                }
+            }
+            return samples;
+        }
+
+        private HttpResponse<String> call(String endpoint, Supplier<HttpRequest> request) throws Exception {
+            HttpRequest built = request.get();
+            long start = System.nanoTime();
+            HttpResponse<String> response;
+            try {
+                response = send(built);
+            } catch (IOException e) {
+                samples.computeIfAbsent(endpoint, k -> new LoadReport.Samples()).record(System.nanoTime() - start, true);
+                throw e;
+            }
+            boolean error = response.statusCode() >= 400;
+            samples.computeIfAbsent(endpoint, k -> new LoadReport.Samples()).record(System.nanoTime() - start, error);
+            return response;
+        }
+    }
+
+    private String login(String username) throws Exception {
+        HttpResponse<String> response = send(loginRequest(username));
+        assertThat(response.statusCode()).as("login of %s", username).isEqualTo(200);
+        JsonNode body = objectMapper.readTree(response.body());
+        return body.get("accessToken").asText();
+    }
+
+    private HttpRequest loginRequest(String username) {
+        String body = "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+        return HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path, String token) {
+        HttpRequest.Builder builder = token == null ? HttpRequest.newBuilder(uri(path)) : authorized(token, path);
+        return builder.GET().build();
+    }
+
+    private HttpRequest createBook(String token) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return multipart("POST", "/api/v1/books", token, Map.of(
+                "title", word(random) + " " + word(random),
+                "description", "Written under load",
+                "price", String.valueOf(random.nextInt(100, 10_000) / 100.0)));
+    }
+
+    private HttpRequest updateBook(String token, Long id) {
+        String body = "{\"title\":\"" + word(ThreadLocalRandom.current()) + " revised\",\"description\":\"Edited under load\",\"price\":12.5}";
+        return authorized(token, "/api/v1/books/" + id)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest multipart(String method, String path, String token, Map<String, String> fields) {
+        String boundary = UUID.randomUUID().toString();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        fields.forEach((name, value) -> body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\""
+                + name + "\"\r\n\r\n" + value + "\r\n").getBytes(StandardCharsets.UTF_8)));
+        body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"cover.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(covers.get(ThreadLocalRandom.current().nextInt(covers.size())));
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return authorized(token, path)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(String token, String path) {
+        return HttpRequest.newBuilder(uri(path)).header("Authorization", "Bearer " + token);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String word(ThreadLocalRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    // small but real PNGs, distinct so uploads are hashed, stored and thumbnailed rather than all deduplicated
+    private static byte[] coverImage(int seed) throws IOException {
+        BufferedImage image = new BufferedImage(300, 450, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, (x / 30 + y / 30 + seed) * 0x0F1E2D & 0xFFFFFF);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
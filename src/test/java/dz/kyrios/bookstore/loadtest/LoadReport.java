@@ -0,0 +1,138 @@
+package dz.kyrios.bookstore.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Latency percentiles and throughput per endpoint of one load test run, stored as JSON so a run can be
+// compared with a baseline
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoadReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private double durationSeconds;
+    private int concurrency;
+    private Map<String, EndpointStats> endpoints = new TreeMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EndpointStats {
+
+        private long requests;
+        private long errors;
+        private double throughput;
+        private double p50Millis;
+        private double p95Millis;
+        private double p99Millis;
+    }
+
+    // raw latencies of one endpoint, one instance per worker thread so recording needs no locking
+    public static class Samples {
+
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        public void record(long latencyNanos, boolean error) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        public void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                record(other.nanos[i], false);
+            }
+            errors += other.errors;
+        }
+
+        EndpointStats toStats(double durationSeconds) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return new EndpointStats(size, errors, round(size / durationSeconds),
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return round(sorted[Math.max(0, index)] / 1_000_000.0);
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+
+    public static LoadReport of(Map<String, Samples> samples, double durationSeconds, int concurrency) {
+        LoadReport report = new LoadReport();
+        report.setDurationSeconds(durationSeconds);
+        report.setConcurrency(concurrency);
+        samples.forEach((endpoint, endpointSamples) -> report.getEndpoints().put(endpoint, endpointSamples.toStats(durationSeconds)));
+        return report;
+    }
+
+    // a latency percentile above, or a throughput below, the baseline by more than the threshold (0.25 = 25%)
+    public List<String> regressionsAgainst(LoadReport baseline, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        baseline.getEndpoints().forEach((endpoint, base) -> {
+            EndpointStats current = endpoints.get(endpoint);
+            if (current == null) {
+                return;
+            }
+            checkLatency(regressions, endpoint, "p95", current.getP95Millis(), base.getP95Millis(), threshold);
+            checkLatency(regressions, endpoint, "p99", current.getP99Millis(), base.getP99Millis(), threshold);
+            if (current.getThroughput() < base.getThroughput() * (1 - threshold)) {
+                regressions.add(String.format("%s throughput %.2f req/s, baseline %.2f req/s",
+                        endpoint, current.getThroughput(), base.getThroughput()));
+            }
+        });
+        return regressions;
+    }
+
+    private void checkLatency(List<String> regressions, String endpoint, String percentile,
+                              double current, double base, double threshold) {
+        if (current > base * (1 + threshold)) {
+            regressions.add(String.format("%s %s %.2f ms, baseline %.2f ms", endpoint, percentile, current, base));
+        }
+    }
+
+    public String toTable() {
+        StringBuilder table = new StringBuilder(String.format("%-28s %9s %7s %10s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+        endpoints.forEach((endpoint, stats) -> table.append(String.format("%-28s %9d %7d %10.2f %9.2f %9.2f %9.2f%n",
+                endpoint, stats.getRequests(), stats.getErrors(), stats.getThroughput(),
+                stats.getP50Millis(), stats.getP95Millis(), stats.getP99Millis())));
+        return table.toString();
+    }
+
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        MAPPER.writeValue(file.toFile(), this);
+    }
+
+    public static LoadReport read(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), LoadReport.class);
+    }
+}
@@ -0,0 +1,92 @@
+package dz.kyrios.bookstore.repository;
+
+import dz.kyrios.bookstore.config.metrics.SqlStatementConfig;
+import dz.kyrios.bookstore.config.metrics.SqlStatementCounter;
+import dz.kyrios.bookstore.dto.BookView;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+import static dz.kyrios.bookstore.config.metrics.SqlStatementAssertions.assertStatements;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(SqlStatementConfig.class)
+public class BookRepositoryTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    private User author;
+
+    @BeforeEach
+    public void setUp() {
+        author = userRepository.save(new User(null, "kyrios", "kyrios", "secret"));
+        User other = userRepository.save(new User(null, "other", "other", "secret"));
+        bookRepository.save(book("Dune", "Desert planet", author));
+        bookRepository.save(book("Dune Messiah", "Sequel", author));
+        bookRepository.save(book("Foundation", "Psychohistory and dune seas", other));
+    }
+
+    @Test
+    public void testFindViewById() {
+        Long id = bookRepository.findAll().get(0).getId();
+
+        BookView view = bookRepository.findViewById(id).orElseThrow();
+
+        assertThat(view.getTitle()).isEqualTo("Dune");
+        assertThat(view.getAuthor()).isEqualTo("kyrios");
+    }
+
+    @Test
+    public void testFindViewById_SingleStatement() throws Exception {
+        Long id = bookRepository.findAll().get(0).getId();
+
+        // the author pseudonym is joined, not loaded afterwards
+        BookView view = assertStatements(sqlStatementCounter, 1, () -> bookRepository.findViewById(id).orElseThrow());
+
+        assertThat(view.getAuthor()).isEqualTo("kyrios");
+    }
+
+    @Test
+    public void testSearch_CaseInsensitive() {
+        Slice<BookView> slice = bookRepository.getBooksWithSearch("DUNE", PageRequest.of(0, 2));
+
+        assertThat(slice.getContent()).extracting(BookView::getTitle).containsExactly("Dune", "Dune Messiah");
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(bookRepository.countBooksWithSearch("dune")).isEqualTo(3);
+        assertThat(bookRepository.countBooksWithSearchByUser(author.getId(), "dune")).isEqualTo(2);
+    }
+
+    @Test
+    public void testKeysetByAuthor() {
+        List<BookView> first = bookRepository.findViewsByAuthorAfter(author.getId(), 0L, PageRequest.ofSize(1));
+        List<BookView> second = bookRepository.findViewsByAuthorAfter(author.getId(), first.get(0).getId(), PageRequest.ofSize(5));
+
+        assertThat(first).extracting(BookView::getTitle).containsExactly("Dune");
+        assertThat(second).extracting(BookView::getTitle).containsExactly("Dune Messiah");
+    }
+
+    private Book book(String title, String description, User author) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setDescription(description);
+        book.setPrice(10.0);
+        book.setAuthor(author);
+        return book;
+    }
+}
@@ -0,0 +1,34 @@
+package dz.kyrios.bookstore.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class CoverBlobRepositoryTest {
+
+    private static final String HASH = "a".repeat(64);
+
+    @Autowired
+    private CoverBlobRepository coverBlobRepository;
+
+    @Test
+    public void testReferenceCounting() {
+        coverBlobRepository.insertIfAbsent(HASH, "image/png", 10);
+        coverBlobRepository.acquire(HASH);
+        coverBlobRepository.insertIfAbsent(HASH, "image/png", 10);
+        coverBlobRepository.acquire(HASH);
+
+        assertThat(coverBlobRepository.findById(HASH).orElseThrow().getRefCount()).isEqualTo(2);
+
+        coverBlobRepository.release(HASH);
+        assertThat(coverBlobRepository.deleteIfUnreferenced(HASH)).isZero();
+        coverBlobRepository.release(HASH);
+        assertThat(coverBlobRepository.deleteIfUnreferenced(HASH)).isEqualTo(1);
+        assertThat(coverBlobRepository.existsById(HASH)).isFalse();
+    }
+}
@@ -0,0 +1,33 @@
+package dz.kyrios.bookstore.repository;
+
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class CoverCleanupRepositoryTest {
+
+    @Autowired
+    private CoverCleanupRepository coverCleanupRepository;
+
+    @Test
+    public void testFindDue_OldestFirstAndNotBeforeDue() {
+        Instant now = Instant.now();
+        coverCleanupRepository.save(new CoverCleanup(null, null, "later", now.plusSeconds(300), 0));
+        coverCleanupRepository.save(new CoverCleanup(null, null, "second", now.minusSeconds(10), 0));
+        coverCleanupRepository.save(new CoverCleanup(null, null, "first", now.minusSeconds(60), 1));
+
+        assertThat(coverCleanupRepository.findDue(now, PageRequest.ofSize(10)))
+                .extracting(CoverCleanup::getPath)
+                .containsExactly("first", "second");
+        assertThat(coverCleanupRepository.findDue(now, PageRequest.ofSize(1))).hasSize(1);
+    }
+}
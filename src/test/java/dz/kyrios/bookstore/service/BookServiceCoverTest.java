@@ -0,0 +1,81 @@
+package dz.kyrios.bookstore.service;
+
+import dz.kyrios.bookstore.config.exception.AuthorizationDeniedException;
+import dz.kyrios.bookstore.config.exception.NotFoundException;
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import dz.kyrios.bookstore.service.storage.CoverStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// a cover upload is only hashed and written to disk once the book exists and belongs to the caller
+@SpringBootTest
+public class BookServiceCoverTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @SpyBean
+    private CoverStorageService coverStorageService;
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testUpdateCoverImage_NotAuthor_NothingStaged() {
+        User author = userRepository.save(new User(null, "cover-author", "cover-author", "secret"));
+        User other = userRepository.save(new User(null, "cover-other", "cover-other", "secret"));
+        Long id = bookRepository.save(new Book(null, "Dune", "Desert planet", null, null, null, 10.0, author, null, null)).getId();
+        authenticate(other);
+
+        assertThatThrownBy(() -> bookService.updateCoverImage(upload(), id))
+                .isInstanceOf(AuthorizationDeniedException.class);
+        verify(coverStorageService, never()).stage(any());
+    }
+
+    @Test
+    public void testUpdateCoverImage_MissingBook_NothingStaged() {
+        authenticate(userRepository.save(new User(null, "cover-missing", "cover-missing", "secret")));
+
+        assertThatThrownBy(() -> bookService.updateCoverImage(upload(), Long.MAX_VALUE))
+                .isInstanceOf(NotFoundException.class);
+        verify(coverStorageService, never()).stage(any());
+    }
+
+    private static void authenticate(User user) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                AuthenticatedUser.fromEntity(user), null, Collections.emptyList()));
+    }
+
+    private static MockMultipartFile upload() {
+        byte[] content = new byte[64];
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return new MockMultipartFile("file", "cover.png", "image/png", content);
+    }
+}
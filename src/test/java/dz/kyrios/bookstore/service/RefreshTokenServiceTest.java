@@ -0,0 +1,94 @@
+package dz.kyrios.bookstore.service;
+
+import dz.kyrios.bookstore.config.exception.InvalidRefreshTokenException;
+import dz.kyrios.bookstore.entity.RefreshToken;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.repository.RefreshTokenRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+public class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        user = userRepository.save(new User(null, "refresh", "refresh", "secret"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        refreshTokenRepository.deleteAll();
+        userRepository.delete(user);
+    }
+
+    @Test
+    public void testRotate_IssuesNextTokenOnce() {
+        String first = refreshTokenService.issue(user.getId());
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(first);
+
+        assertThat(rotation.user().getId()).isEqualTo(user.getId());
+        assertThat(rotation.user().getUsername()).isEqualTo("refresh");
+        assertThat(rotation.user().getPassword()).isNull();
+        assertThat(rotation.refreshToken()).isNotEqualTo(first);
+        assertThat(refreshTokenService.rotate(rotation.refreshToken()).refreshToken()).isNotBlank();
+        // only the hashes are stored
+        assertThat(refreshTokenRepository.findAll()).extracting(RefreshToken::getTokenHash)
+                .hasSize(3)
+                .doesNotContain(first, rotation.refreshToken());
+    }
+
+    @Test
+    public void testReuse_RevokesFamily() {
+        String first = refreshTokenService.issue(user.getId());
+        String other = refreshTokenService.issue(user.getId());
+        String second = refreshTokenService.rotate(first).refreshToken();
+
+        assertThatThrownBy(() -> refreshTokenService.rotate(first))
+                .isInstanceOf(InvalidRefreshTokenException.class)
+                .hasMessageContaining("already used");
+
+        // committed although the call failed, the legitimate holder has to log in again
+        assertThatThrownBy(() -> refreshTokenService.rotate(second)).isInstanceOf(InvalidRefreshTokenException.class);
+        // other logins are not affected
+        assertThat(refreshTokenService.rotate(other).refreshToken()).isNotBlank();
+    }
+
+    @Test
+    public void testRevokeAndExpiry() {
+        String revoked = refreshTokenService.issue(user.getId());
+        refreshTokenService.revoke(revoked);
+        assertThatThrownBy(() -> refreshTokenService.rotate(revoked)).isInstanceOf(InvalidRefreshTokenException.class);
+
+        String expired = refreshTokenService.issue(user.getId());
+        refreshTokenRepository.findAll().forEach(token -> {
+            token.setExpiresAt(Instant.now().minusSeconds(1));
+            refreshTokenRepository.save(token);
+        });
+        assertThatThrownBy(() -> refreshTokenService.rotate(expired)).isInstanceOf(InvalidRefreshTokenException.class);
+
+        refreshTokenService.purgeExpired();
+        assertThat(refreshTokenRepository.count()).isZero();
+        assertThatThrownBy(() -> refreshTokenService.rotate("unknown")).isInstanceOf(InvalidRefreshTokenException.class);
+    }
+}
@@ -0,0 +1,166 @@
+package dz.kyrios.bookstore.service.bulk;
+
+import dz.kyrios.bookstore.config.exception.ExportBusyException;
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.mapper.BookMapperImp;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import dz.kyrios.bookstore.service.AuthService;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.ServletOutputStream;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "book-export.max-concurrent=1")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@AutoConfigureJson
+@Import({BookExportService.class, BookMapperImp.class})
+public class BookExportServiceTest {
+
+    @Autowired
+    private BookExportService bookExportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockBean
+    private AuthService authService;
+
+    private User author;
+
+    private Long dune;
+
+    private Long duneMessiah;
+
+    @BeforeEach
+    public void setUp() {
+        author = userRepository.save(new User(null, "kyrios", "kyrios", "secret"));
+        User other = userRepository.save(new User(null, "other", "other", "secret"));
+        dune = bookRepository.save(book("Dune", "Desert planet, spice", 9.99, author)).getId();
+        duneMessiah = bookRepository.save(book("Dune Messiah", null, null, author)).getId();
+        bookRepository.save(book("Foundation", "Psychohistory", 7.5, other));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void testExportAll_Ndjson() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = bookExportService.exportAll(ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertThat(count).isEqualTo(3);
+        assertThat(lines).hasSize(4);
+        assertThat(lines[0]).contains("\"title\":\"Dune\"", "\"author\":\"kyrios\"");
+        assertThat(lines[2]).contains("\"title\":\"Foundation\"", "\"author\":\"other\"");
+        assertThat(lines[3]).isEmpty();
+        // projections only, no entity was loaded into the persistence context
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    public void testExportByCurrentAuthor_Csv() {
+        when(authService.getCurrentAuthenticatedUser()).thenReturn(AuthenticatedUser.fromEntity(author));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = bookExportService.exportByCurrentAuthor(ExportFormat.CSV, out);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "id,title,description,price,author,coverImageHash",
+                dune + ",Dune,\"Desert planet, spice\",9.99,kyrios,",
+                duneMessiah + ",\"Dune Messiah\",,,kyrios,");
+    }
+
+    @Test
+    public void testWriteAttachment() throws Exception {
+        when(authService.getCurrentAuthenticatedUser()).thenReturn(AuthenticatedUser.fromEntity(author));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        long count = bookExportService.writeAttachment(ExportFormat.CSV, ExportScope.CURRENT_AUTHOR, response);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(response.getContentType()).isEqualTo("text/csv");
+        assertThat(response.getHeader("Content-Disposition")).isEqualTo("attachment; filename=\"books.csv\"");
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8)).contains(duneMessiah + ",\"Dune Messiah\"");
+
+        response = new MockHttpServletResponse();
+        assertThat(bookExportService.writeAttachment(ExportFormat.NDJSON, ExportScope.ALL, response)).isEqualTo(3);
+        assertThat(response.getContentType()).isEqualTo("application/x-ndjson");
+    }
+
+    @Test
+    public void testWriteAttachment_RejectedWhileAllSlotsAreTaken() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // the running export holds its slot until the client side lets it write
+        MockHttpServletResponse slowClient = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getOutputStream();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> running = executor.submit(() -> bookExportService.writeAttachment(ExportFormat.NDJSON, ExportScope.ALL, slowClient));
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            assertThatThrownBy(() -> bookExportService.writeAttachment(ExportFormat.NDJSON, ExportScope.ALL, response))
+                    .isInstanceOf(ExportBusyException.class);
+            assertThat(response.getHeader("Content-Disposition")).isNull();
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        // the slot is free again
+        assertThat(bookExportService.writeAttachment(ExportFormat.NDJSON, ExportScope.ALL, new MockHttpServletResponse())).isEqualTo(3);
+    }
+
+    private Book book(String title, String description, Double price, User author) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setDescription(description);
+        book.setPrice(price);
+        book.setAuthor(author);
+        return book;
+    }
+}
@@ -0,0 +1,134 @@
+package dz.kyrios.bookstore.service.bulk;
+
+import dz.kyrios.bookstore.config.security.AuthenticatedUser;
+import dz.kyrios.bookstore.dto.BookImportResultDto;
+import dz.kyrios.bookstore.entity.Book;
+import dz.kyrios.bookstore.entity.User;
+import dz.kyrios.bookstore.mapper.BookMapperImp;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.repository.UserRepository;
+import dz.kyrios.bookstore.service.AuthService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.when;
+
+// batches commit on their own, the test runs without a surrounding transaction
+@DataJpaTest(properties = "book-import.batch-size=2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@AutoConfigureJson
+@Import({BookImportService.class, BookMapperImp.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BookImportServiceTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private AuthService authService;
+
+    private User author;
+
+    @BeforeEach
+    public void setUp() {
+        author = userRepository.save(new User(null, "kyrios", "kyrios", "secret"));
+        when(authService.getCurrentAuthenticatedUser()).thenReturn(AuthenticatedUser.fromEntity(author));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testImportCsv_ValidRowsSavedInvalidRowsReported() {
+        String csv = """
+                title,description,price
+                Dune,"Desert planet, spice",9.99
+                ,No title,1
+                Dune Messiah,,
+                Children of Dune,Third book,abc
+                God Emperor,Fourth book,-1
+                Heretics,Fifth book,12.5
+                Chapterhouse,Free sample,0
+                """;
+
+        BookImportResultDto result = bookImportService.importBooks(stream(csv), BookImportService.TEXT_CSV);
+
+        assertThat(result.getRows()).isEqualTo(7);
+        assertThat(result.getImported()).isEqualTo(4);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting("row").containsExactly(2L, 4L, 5L);
+        assertThat(result.getErrors().get(2).getMessage()).isEqualTo("Price must be a non-negative number");
+        assertThat(bookRepository.findAll())
+                .extracting(Book::getTitle, Book::getDescription, Book::getPrice)
+                .containsExactlyInAnyOrder(
+                        tuple("Dune", "Desert planet, spice", 9.99),
+                        tuple("Dune Messiah", null, null),
+                        tuple("Heretics", "Fifth book", 12.5),
+                        tuple("Chapterhouse", "Free sample", 0.0));
+        assertThat(bookRepository.countByAuthorId(author.getId())).isEqualTo(4);
+    }
+
+    @Test
+    public void testImportNdjson_SkipsBlankLinesAndReportsInvalidJson() {
+        String ndjson = """
+                {"title":"Foundation","description":"Psychohistory","price":7.5}
+
+                {"title":"Foundation and Empire"
+                {"title":"Second Foundation","price":8}
+                """;
+
+        BookImportResultDto result = bookImportService.importBooks(stream(ndjson), BookImportService.APPLICATION_NDJSON);
+
+        assertThat(result.getRows()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("row").containsExactly(2L);
+        assertThat(result.getErrors().get(0).getMessage()).startsWith("Invalid JSON");
+        assertThat(bookRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testImportNdjson_ReportsValuesThatAreNotObjects() {
+        String ndjson = """
+                {"title":"Foundation","price":7.5}
+                null
+                42
+                ["Dune"]
+                {"title":"Second Foundation","price":8}
+                """;
+
+        BookImportResultDto result = bookImportService.importBooks(stream(ndjson), BookImportService.APPLICATION_NDJSON);
+
+        assertThat(result.getRows()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("row").containsExactly(2L, 3L, 4L);
+        assertThat(result.getErrors()).extracting("message").containsOnly("Invalid JSON: expected an object");
+        assertThat(bookRepository.count()).isEqualTo(2);
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,61 @@
+package dz.kyrios.bookstore.service.cache;
+
+import dz.kyrios.bookstore.dto.BookDetailView;
+import dz.kyrios.bookstore.mapper.BookMapperImp;
+import dz.kyrios.bookstore.repository.BookRepository;
+import dz.kyrios.bookstore.service.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class PublicBookCacheTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+
+    private final PublicBookCache cache = new PublicBookCache(bookRepository, new BookMapperImp(),
+            100, Duration.ofMinutes(10), Duration.ZERO);
+
+    @Test
+    public void testGet_LoadsOnceThenHits() {
+        BookDetailView view = mock(BookDetailView.class);
+        when(view.getId()).thenReturn(1L);
+        when(view.getTitle()).thenReturn("Dune");
+        when(bookRepository.findViewById(1L)).thenReturn(Optional.of(view));
+
+        assertThat(cache.get(1L).getTitle()).isEqualTo("Dune");
+        assertThat(cache.get(1L).getTitle()).isEqualTo("Dune");
+
+        verify(bookRepository, times(1)).findViewById(1L);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_MissingBookIsNotCached() {
+        when(bookRepository.findViewById(2L)).thenReturn(Optional.empty());
+
+        assertThat(cache.get(2L)).isNull();
+        assertThat(cache.get(2L)).isNull();
+
+        verify(bookRepository, times(2)).findViewById(2L);
+    }
+
+    @Test
+    public void testOnBookChanged_InvalidatesOnlyThatBook() {
+        BookDetailView view = mock(BookDetailView.class);
+        when(bookRepository.findViewById(anyLong())).thenReturn(Optional.of(view));
+        cache.get(1L);
+        cache.get(2L);
+
+        cache.onBookChanged(new BookChangedEvent(1L));
+        cache.get(1L);
+        cache.get(2L);
+
+        verify(bookRepository, times(2)).findViewById(1L);
+        verify(bookRepository, times(1)).findViewById(2L);
+    }
+}
@@ -0,0 +1,179 @@
+package dz.kyrios.bookstore.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dz.kyrios.bookstore.dto.BookListingState;
+import dz.kyrios.bookstore.dto.BookResponseDto;
+import dz.kyrios.bookstore.service.BookService;
+import dz.kyrios.bookstore.service.event.BookChangedEvent;
+import dz.kyrios.bookstore.service.event.BooksImportedEvent;
+import dz.kyrios.bookstore.service.pagination.CountMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PublicListingCacheTest {
+
+    private final BookService bookService = mock(BookService.class);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final PublicListingCache cache = new PublicListingCache(bookService, objectMapper,
+            5, 50, 100, Duration.ofMinutes(1), true, 1024);
+
+    @BeforeEach
+    public void setUp() {
+        BookListingState state = mock(BookListingState.class);
+        when(state.getCount()).thenReturn(40L);
+        when(state.getVersions()).thenReturn(42L);
+        when(state.getLastModified()).thenReturn(1714558530L);
+        when(bookService.getListingState("")).thenReturn(state);
+        when(bookService.getBooksWithSearch(eq(""), any(), eq(CountMode.EXACT), anyLong())).thenAnswer(invocation -> {
+            PageRequest pageable = invocation.getArgument(1);
+            List<BookResponseDto> books = new ArrayList<>();
+            for (long i = 0; i < pageable.getPageSize(); i++) {
+                books.add(new BookResponseDto(i, "Title " + i, "Description of book " + i, null, null, 9.99, "kyrios", 0L, null));
+            }
+            return new PageImpl<>(books, pageable, 40);
+        });
+    }
+
+    @Test
+    public void testGet_SerializesOnceThenHits() throws Exception {
+        SerializedListing first = cache.get(0, 10);
+        SerializedListing second = cache.get(0, 10);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getETag()).isEqualTo("W/\"40-42-1714558530\"");
+        assertThat(objectMapper.readTree(first.getJson()).get("content").size()).isEqualTo(10);
+        verify(bookService, times(1)).getBooksWithSearch("", PageRequest.of(0, 10), CountMode.EXACT, 40L);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_GzipOnlyAboveMinSize() throws Exception {
+        SerializedListing large = cache.get(0, 20);
+        SerializedListing small = cache.get(0, 1);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(large.getGzip()))) {
+            assertThat(in.readAllBytes()).isEqualTo(large.getJson());
+        }
+        assertThat(large.getGzip().length).isLessThan(large.getJson().length);
+        assertThat(small.getGzip()).isNull();
+    }
+
+    @Test
+    public void testBookChanges_DropEveryPage() {
+        cache.get(0, 10);
+        cache.get(1, 10);
+
+        cache.onBookChanged(new BookChangedEvent(7L));
+        cache.get(0, 10);
+        cache.onBooksImported(new BooksImportedEvent(1L, 3));
+        cache.get(1, 10);
+
+        verify(bookService, times(2)).getBooksWithSearch("", PageRequest.of(0, 10), CountMode.EXACT, 40L);
+        verify(bookService, times(2)).getBooksWithSearch("", PageRequest.of(1, 10), CountMode.EXACT, 40L);
+    }
+
+    @Test
+    public void testChangeDuringLoad_PageNotReused() {
+        // a book change commits while the page is being read
+        when(bookService.getBooksWithSearch("", PageRequest.of(2, 10), CountMode.EXACT, 40L))
+                .thenAnswer(invocation -> {
+                    cache.onBookChanged(new BookChangedEvent(7L));
+                    return new PageImpl<>(List.of(), invocation.getArgument(1), 40);
+                })
+                .thenReturn(new PageImpl<>(List.of(), PageRequest.of(2, 10), 40));
+
+        cache.get(2, 10);
+        cache.get(2, 10);
+        cache.get(2, 10);
+
+        verify(bookService, times(2)).getBooksWithSearch("", PageRequest.of(2, 10), CountMode.EXACT, 40L);
+    }
+
+    @Test
+    public void testChangeWhileLoadBlocked_NextLoadRunsItsOwnQuery() throws Exception {
+        // the listing state goes through the query coalescer, as in BookService
+        QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry(), true, Duration.ofSeconds(10));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+        BookListingState before = state(40L);
+        BookListingState after = state(41L);
+        when(bookService.getListingState("")).thenAnswer(invocation -> coalescer.execute("state:", () -> {
+            if (queries.incrementAndGet() == 1) {
+                loading.countDown();
+                await(release);
+                return before;
+            }
+            return after;
+        }));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SerializedListing> old = executor.submit(() -> cache.get(3, 10));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            cache.onBookChanged(new BookChangedEvent(7L));
+            SerializedListing current = CompletableFuture.supplyAsync(() -> cache.get(3, 10)).get(5, TimeUnit.SECONDS);
+
+            assertThat(current.getETag()).isEqualTo(BookListingState.eTag(after));
+            release.countDown();
+            assertThat(old.get(5, TimeUnit.SECONDS).getETag()).isEqualTo(BookListingState.eTag(before));
+            assertThat(cache.get(3, 10)).isSameAs(current);
+            assertThat(queries.get()).isEqualTo(2);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCovers_OnlyHotAnonymousPages() {
+        assertThat(cache.covers("", null, CountMode.EXACT, 0, 10)).isTrue();
+        assertThat(cache.covers(null, null, CountMode.EXACT, 4, 50)).isTrue();
+        assertThat(cache.covers("dune", null, CountMode.EXACT, 0, 10)).isFalse();
+        assertThat(cache.covers("", "", CountMode.EXACT, 0, 10)).isFalse();
+        assertThat(cache.covers("", null, CountMode.NONE, 0, 10)).isFalse();
+        assertThat(cache.covers("", null, CountMode.EXACT, 5, 10)).isFalse();
+        assertThat(cache.covers("", null, CountMode.EXACT, 0, 51)).isFalse();
+    }
+
+    private static BookListingState state(long count) {
+        BookListingState state = mock(BookListingState.class);
+        when(state.getCount()).thenReturn(count);
+        when(state.getVersions()).thenReturn(count);
+        when(state.getLastModified()).thenReturn(1714558530L);
+        return state;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package dz.kyrios.bookstore.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCalls_ShareOneQuery() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(meterRegistry, true, Duration.ofSeconds(10));
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("dune", () -> {
+            queries.incrementAndGet();
+            await(release);
+            return "page";
+        }));
+        awaitInFlight(1);
+        Future<String> first = executor.submit(() -> coalescer.execute("dune", () -> "own " + queries.incrementAndGet()));
+        Future<String> second = executor.submit(() -> coalescer.execute("dune", () -> "own " + queries.incrementAndGet()));
+        awaitWaiting(2);
+        // a different key does not wait
+        assertThat(coalescer.execute("foundation", () -> "other")).isEqualTo("other");
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("page");
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("page");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("page");
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(count("leader")).isEqualTo(2);
+        assertThat(count("shared")).isEqualTo(2);
+        assertThat(meterRegistry.get("bookstore.query.coalescing.in.flight").gauge().value()).isZero();
+    }
+
+    @Test
+    public void testLeaderFailure_PropagatedToWaitingCalls() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(meterRegistry, true, Duration.ofSeconds(10));
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("dune", () -> {
+            await(release);
+            throw new IllegalArgumentException("bad keyword");
+        }));
+        awaitInFlight(1);
+        Future<String> follower = executor.submit(() -> coalescer.execute("dune", () -> "own"));
+        awaitWaiting(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("bad keyword");
+        // the failure is not kept
+        assertThat(coalescer.execute("dune", () -> "retried")).isEqualTo("retried");
+    }
+
+    @Test
+    public void testTimeout_RunsOwnQuery() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(meterRegistry, true, Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("dune", () -> {
+            await(release);
+            return "slow";
+        }));
+        awaitInFlight(1);
+
+        assertThat(coalescer.execute("dune", () -> "own")).isEqualTo("own");
+        assertThat(count("timeout")).isEqualTo(1);
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+
+    @Test
+    public void testDisabled_EveryCallRunsItsQuery() {
+        QueryCoalescer coalescer = new QueryCoalescer(meterRegistry, false, Duration.ofSeconds(10));
+        AtomicInteger queries = new AtomicInteger();
+
+        coalescer.execute("dune", queries::incrementAndGet);
+        coalescer.execute("dune", queries::incrementAndGet);
+
+        assertThat(queries.get()).isEqualTo(2);
+        assertThat(count("leader")).isZero();
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("bookstore.query.coalescing").tag("outcome", outcome).counter().count();
+    }
+
+    private void awaitInFlight(int expected) throws InterruptedException {
+        awaitGauge("bookstore.query.coalescing.in.flight", expected);
+    }
+
+    private void awaitWaiting(int expected) throws InterruptedException {
+        awaitGauge("bookstore.query.coalescing.waiting", expected);
+    }
+
+    private void awaitGauge(String name, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(name).gauge().value() < expected) {
+            assertThat(System.nanoTime()).as(name).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dz.kyrios.bookstore.service.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookCursorTest {
+
+    @Test
+    public void testEncodeDecode() {
+        assertThat(BookCursor.decode(BookCursor.encode(42L))).isEqualTo(42L);
+        assertThat(BookCursor.decode("")).isZero();
+        assertThat(BookCursor.decode(null)).isZero();
+        assertThatThrownBy(() -> BookCursor.decode("not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor: not-a-cursor");
+    }
+
+    @Test
+    public void testCheckSize() {
+        assertThat(BookCursor.checkSize(1, 100)).isEqualTo(1);
+        assertThat(BookCursor.checkSize(100, 100)).isEqualTo(100);
+        assertThatThrownBy(() -> BookCursor.checkSize(0, 100))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid page size: 0, expected 1 to 100");
+        assertThatThrownBy(() -> BookCursor.checkSize(-5, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BookCursor.checkSize(101, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,127 @@
+package dz.kyrios.bookstore.service.storage;
+
+import dz.kyrios.bookstore.entity.CoverBlob;
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import dz.kyrios.bookstore.repository.CoverBlobRepository;
+import dz.kyrios.bookstore.repository.CoverCleanupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CoverCleanupWorkerTest {
+
+    @TempDir
+    private Path uploadDir;
+
+    private final CoverCleanupRepository coverCleanupRepository = mock(CoverCleanupRepository.class);
+
+    private final CoverBlobRepository coverBlobRepository = mock(CoverBlobRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CoverCleanupWorker worker = new CoverCleanupWorker(coverCleanupRepository, coverBlobRepository,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry, 100, Duration.ofMinutes(1));
+
+    @BeforeEach
+    public void setUp() {
+        when(coverCleanupRepository.existsById(any())).thenReturn(true);
+        when(coverBlobRepository.lock(any(), any(), anyLong())).thenAnswer(invocation ->
+                new CoverBlob(invocation.getArgument(0), "image/png", 1, 0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    public void testProcessDue_DeletesUnreferencedFiles() throws Exception {
+        Path released = Files.write(uploadDir.resolve("released"), new byte[]{1});
+        Path legacy = Files.write(uploadDir.resolve("cover.png"), new byte[]{2});
+        CoverCleanup blob = new CoverCleanup(1L, "a".repeat(64), released.toString(), Instant.now(), 0);
+        CoverCleanup owned = new CoverCleanup(2L, null, legacy.toString(), Instant.now(), 0);
+        when(coverCleanupRepository.findDue(any(), any())).thenReturn(List.of(blob, owned));
+
+        assertThat(worker.processDue()).isEqualTo(2);
+
+        assertThat(released).doesNotExist();
+        assertThat(legacy).doesNotExist();
+        verify(coverCleanupRepository).delete(blob);
+        verify(coverCleanupRepository).delete(owned);
+        assertThat(meterRegistry.get("bookstore.cover.cleanup").tag("outcome", "deleted").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testProcessDue_KeepsBlobReferencedAgain() throws Exception {
+        Path shared = Files.write(uploadDir.resolve("shared"), new byte[]{1});
+        CoverCleanup cleanup = new CoverCleanup(1L, "b".repeat(64), shared.toString(), Instant.now(), 0);
+        when(coverCleanupRepository.findDue(any(), any())).thenReturn(List.of(cleanup));
+        when(coverBlobRepository.lock(eq("b".repeat(64)), any(), anyLong())).thenReturn(new CoverBlob("b".repeat(64), "image/png", 1, 1));
+
+        worker.processDue();
+
+        assertThat(shared).exists();
+        verify(coverCleanupRepository).delete(cleanup);
+        verify(coverBlobRepository, never()).deleteIfUnreferenced(any());
+    }
+
+    @Test
+    public void testProcessDue_KeepsBlobStagedByAnotherUpload() throws Exception {
+        Path staged = Files.write(uploadDir.resolve("staged"), new byte[]{1});
+        CoverCleanup cleanup = new CoverCleanup(1L, "c".repeat(64), staged.toString(), Instant.now(), 0);
+        when(coverCleanupRepository.findDue(any(), any())).thenReturn(List.of(cleanup));
+        when(coverCleanupRepository.existsPending(eq("c".repeat(64)), eq(1L), any())).thenReturn(true);
+
+        worker.processDue();
+
+        assertThat(staged).exists();
+        verify(coverCleanupRepository).delete(cleanup);
+        // the lock target is not left behind, reference() inserts the row again
+        verify(coverBlobRepository).deleteIfUnreferenced("c".repeat(64));
+    }
+
+    @Test
+    public void testProcessDue_RowTakenByReference() throws Exception {
+        Path referenced = Files.write(uploadDir.resolve("referenced"), new byte[]{1});
+        CoverCleanup cleanup = new CoverCleanup(1L, "d".repeat(64), referenced.toString(), Instant.now(), 0);
+        when(coverCleanupRepository.findDue(any(), any())).thenReturn(List.of(cleanup));
+        when(coverCleanupRepository.existsById(1L)).thenReturn(false);
+
+        worker.processDue();
+
+        assertThat(referenced).exists();
+        verify(coverCleanupRepository, never()).delete(any());
+    }
+
+    @Test
+    public void testProcessDue_FailedDeleteRetriedLater() throws Exception {
+        // a non empty directory can not be deleted
+        Path directory = Files.createDirectories(uploadDir.resolve("busy"));
+        Files.write(directory.resolve("child"), new byte[]{1});
+        CoverCleanup cleanup = new CoverCleanup(1L, null, directory.toString(), Instant.now(), 0);
+        when(coverCleanupRepository.findDue(any(), any())).thenReturn(List.of(cleanup));
+
+        worker.processDue();
+
+        verify(coverCleanupRepository, never()).delete(any());
+        verify(coverCleanupRepository).save(cleanup);
+        assertThat(cleanup.getAttempts()).isEqualTo(1);
+        assertThat(cleanup.getDueAt()).isAfter(Instant.now().plusSeconds(50));
+    }
+}
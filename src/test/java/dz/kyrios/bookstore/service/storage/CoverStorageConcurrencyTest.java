@@ -0,0 +1,182 @@
+package dz.kyrios.bookstore.service.storage;
+
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import dz.kyrios.bookstore.repository.CoverBlobRepository;
+import dz.kyrios.bookstore.repository.CoverCleanupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Releases, uploads of the same content and the cleanup worker interleaved on the real database: a committed
+// reference must always find its file
+@SpringBootTest
+public class CoverStorageConcurrencyTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Autowired
+    private CoverStorageService coverStorageService;
+
+    @Autowired
+    private CoverCleanupWorker coverCleanupWorker;
+
+    @Autowired
+    private CoverBlobRepository coverBlobRepository;
+
+    @Autowired
+    private CoverCleanupRepository coverCleanupRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final byte[] content = uniqueContent();
+
+    @AfterEach
+    public void tearDown() {
+        coverCleanupRepository.deleteAll();
+        coverBlobRepository.deleteAll();
+    }
+
+    @Test
+    public void testStageAfterRelease_FileKeptForReference() throws Exception {
+        StoredCover first = referenced();
+        coverStorageService.release(first.getHash(), first.getPath().toString());
+
+        // uploaded again before the worker ran, the file is still there and the release row is due
+        StoredCover second = coverStorageService.stage(upload());
+        coverCleanupWorker.processDue();
+        reference(second);
+        coverCleanupWorker.processDue();
+
+        assertThat(second.getPath()).exists();
+        assertThat(coverBlobRepository.findById(second.getHash()).orElseThrow().getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStageAfterDelete_FilePlacedAgain() throws Exception {
+        StoredCover first = referenced();
+        coverStorageService.release(first.getHash(), first.getPath().toString());
+        coverCleanupWorker.processDue();
+        assertThat(first.getPath()).doesNotExist();
+
+        StoredCover second = referenced();
+
+        assertThat(second.getPath()).exists();
+    }
+
+    @Test
+    public void testWorkerWaitsForUncommittedReference() throws Exception {
+        StoredCover first = referenced();
+        StoredCover second = coverStorageService.stage(upload());
+        coverStorageService.release(first.getHash(), first.getPath().toString());
+        coverCleanupWorker.processDue();
+
+        // a reference taken but not committed yet: the staged row is gone, the refcount still 0 for others
+        CountDownLatch referencing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> book = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                coverStorageService.reference(second);
+                referencing.countDown();
+                await(commit);
+            }));
+            assertThat(referencing.await(5, TimeUnit.SECONDS)).isTrue();
+            // a due row for the hash, as left by a release
+            coverCleanupRepository.save(new CoverCleanup(null, second.getHash(),
+                    second.getPath().toString(), Instant.now(), 0));
+            Future<Integer> worker = executor.submit(coverCleanupWorker::processDue);
+
+            Thread.sleep(300);
+            assertThat(worker.isDone()).isFalse();
+            commit.countDown();
+            book.get(10, TimeUnit.SECONDS);
+            worker.get(10, TimeUnit.SECONDS);
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+
+        assertThat(second.getPath()).exists();
+        assertThat(coverBlobRepository.findById(second.getHash()).orElseThrow().getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testConcurrentUploadsReleasesAndCleanup() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            CompletableFuture<Void> worker = CompletableFuture.runAsync(() -> {
+                while (running.get()) {
+                    coverCleanupWorker.processDue();
+                }
+            }, executor);
+            List<CompletableFuture<Void>> uploaders = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                uploaders.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        StoredCover cover = referenced();
+                        // a committed reference owns a file, whatever the worker and the other uploader did
+                        assertThat(cover.getPath()).exists();
+                        coverStorageService.release(cover.getHash(), cover.getPath().toString());
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(uploaders.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+            running.set(false);
+            worker.get(10, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        coverCleanupWorker.processDue();
+        assertThat(coverBlobRepository.findAll()).isEmpty();
+    }
+
+    private StoredCover referenced() {
+        StoredCover cover = coverStorageService.stage(upload());
+        reference(cover);
+        return cover;
+    }
+
+    private void reference(StoredCover cover) {
+        transactionTemplate.executeWithoutResult(status -> coverStorageService.reference(cover));
+    }
+
+    private MockMultipartFile upload() {
+        return new MockMultipartFile("file", "cover.png", "image/png", content);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] uniqueContent() {
+        byte[] content = new byte[64];
+        ThreadLocalRandom.current().nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return content;
+    }
+}
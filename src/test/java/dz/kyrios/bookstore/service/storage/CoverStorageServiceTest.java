@@ -0,0 +1,206 @@
+package dz.kyrios.bookstore.service.storage;
+
+import dz.kyrios.bookstore.config.exception.InvalidFileException;
+import dz.kyrios.bookstore.entity.CoverCleanup;
+import dz.kyrios.bookstore.repository.CoverBlobRepository;
+import dz.kyrios.bookstore.repository.CoverCleanupRepository;
+import dz.kyrios.bookstore.service.event.CoverReleasedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CoverStorageServiceTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+
+    @TempDir
+    private Path uploadDir;
+
+    private final CoverBlobRepository coverBlobRepository = mock(CoverBlobRepository.class);
+
+    private final CoverCleanupRepository coverCleanupRepository = mock(CoverCleanupRepository.class);
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @BeforeEach
+    public void setUp() {
+        when(coverCleanupRepository.save(any(CoverCleanup.class))).thenAnswer(invocation -> {
+            CoverCleanup cleanup = invocation.getArgument(0);
+            cleanup.setId(42L);
+            return cleanup;
+        });
+    }
+
+    @Test
+    public void testStage_HashesAndMovesIntoPlace() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PNG));
+
+        StoredCover cover = storage.stage(new MockMultipartFile("file", "../../cover.png", "image/png", PNG));
+
+        assertThat(cover.getPath()).isEqualTo(uploadDir.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash));
+        assertThat(Files.readAllBytes(cover.getPath())).isEqualTo(PNG);
+        assertThat(cover.getHash()).isEqualTo(hash);
+        assertThat(cover.getContentType()).isEqualTo("image/png");
+        assertThat(regularFiles()).containsExactly(cover.getPath());
+        // placed holding the blob row lock, no reference yet: the file is deleted after the grace period
+        // unless one is taken
+        verify(coverBlobRepository).lock(hash, "image/png", PNG.length);
+        verify(coverBlobRepository, never()).acquire(any());
+        ArgumentCaptor<CoverCleanup> staged = ArgumentCaptor.forClass(CoverCleanup.class);
+        verify(coverCleanupRepository).save(staged.capture());
+        assertThat(staged.getValue().getHash()).isEqualTo(hash);
+        assertThat(staged.getValue().getPath()).isEqualTo(cover.getPath().toString());
+        assertThat(staged.getValue().getDueAt()).isAfter(Instant.now().plus(Duration.ofMinutes(4)));
+        assertThat(cover.getStagedCleanupId()).isEqualTo(42L);
+    }
+
+    @Test
+    public void testReference_TakesReferenceAndCancelsCleanup() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+        StoredCover cover = storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG));
+
+        when(coverCleanupRepository.deleteStaged(42L)).thenReturn(1);
+        clearInvocations(coverBlobRepository);
+
+        storage.reference(cover);
+
+        verify(coverBlobRepository).lock(cover.getHash(), "image/png", PNG.length);
+        verify(coverBlobRepository).acquire(cover.getHash());
+    }
+
+    @Test
+    public void testReference_ExpiredStagedCoverRejected() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+        StoredCover cover = storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG));
+        // processed by the worker, the file is gone
+        when(coverCleanupRepository.deleteStaged(42L)).thenReturn(0);
+
+        assertThatThrownBy(() -> storage.reference(cover)).isInstanceOf(InvalidFileException.class);
+        verify(coverBlobRepository, never()).acquire(any());
+
+        when(coverCleanupRepository.deleteStaged(42L)).thenReturn(1);
+        Files.delete(cover.getPath());
+        assertThatThrownBy(() -> storage.reference(cover)).isInstanceOf(InvalidFileException.class);
+        verify(coverBlobRepository, never()).acquire(any());
+    }
+
+    @Test
+    public void testStage_SameContentSharesOneBlob() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+
+        StoredCover first = storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG));
+        StoredCover second = storage.stage(new MockMultipartFile("file", "other.png", "image/png", PNG));
+
+        assertThat(second.getPath()).isEqualTo(first.getPath());
+        assertThat(regularFiles()).containsExactly(first.getPath());
+    }
+
+    @Test
+    public void testStage_ReplacesExistingFile() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+        StoredCover first = storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG));
+        // a file about to be deleted, or damaged, is not trusted
+        Files.write(first.getPath(), new byte[]{0});
+
+        StoredCover second = storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG));
+
+        assertThat(Files.readAllBytes(second.getPath())).isEqualTo(PNG);
+    }
+
+    @Test
+    public void testRelease_RecordsCleanupWithLastReference() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+        StoredCover cover = storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG));
+        clearInvocations(coverCleanupRepository);
+
+        when(coverBlobRepository.deleteIfUnreferenced(cover.getHash())).thenReturn(0);
+        storage.release(cover.getHash(), cover.getPath().toString());
+        verify(eventPublisher, never()).publishEvent(any(CoverReleasedEvent.class));
+        verify(coverCleanupRepository, never()).save(any());
+
+        when(coverBlobRepository.deleteIfUnreferenced(cover.getHash())).thenReturn(1);
+        storage.release(cover.getHash(), cover.getPath().toString());
+        verify(eventPublisher).publishEvent(any(CoverReleasedEvent.class));
+        ArgumentCaptor<CoverCleanup> cleanup = ArgumentCaptor.forClass(CoverCleanup.class);
+        verify(coverCleanupRepository).save(cleanup.capture());
+        assertThat(cleanup.getValue().getHash()).isEqualTo(cover.getHash());
+        assertThat(cleanup.getValue().getDueAt()).isBeforeOrEqualTo(Instant.now());
+        // deleted by the worker, after the commit
+        assertThat(cover.getPath()).exists();
+    }
+
+    @Test
+    public void testRelease_LegacyFileNamedCoverRecordedWithoutHash() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+        Path legacy = Files.write(uploadDir.resolve("cover.png"), PNG);
+
+        storage.release("0".repeat(64), legacy.toString());
+
+        ArgumentCaptor<CoverCleanup> cleanup = ArgumentCaptor.forClass(CoverCleanup.class);
+        verify(coverCleanupRepository).save(cleanup.capture());
+        assertThat(cleanup.getValue().getHash()).isNull();
+        assertThat(cleanup.getValue().getPath()).isEqualTo(legacy.toString());
+        assertThat(legacy).exists();
+        verifyNoInteractions(coverBlobRepository);
+    }
+
+    @Test
+    public void testOpenBlob_RejectsInvalidHash() {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+
+        assertThat(storage.openBlob("../../etc/passwd")).isNull();
+        verifyNoInteractions(coverBlobRepository);
+    }
+
+    @Test
+    public void testStore_RejectsNonImage() throws Exception {
+        CoverStorageService storage = storage(DataSize.ofKilobytes(1));
+
+        assertThatThrownBy(() -> storage.stage(new MockMultipartFile("file", "cover.jpg", "image/jpeg", "<html>".getBytes())))
+                .isInstanceOf(InvalidFileException.class);
+        assertThat(regularFiles()).isEmpty();
+        verifyNoInteractions(coverBlobRepository, coverCleanupRepository);
+    }
+
+    @Test
+    public void testStore_RejectsOversizedFile() {
+        CoverStorageService storage = storage(DataSize.ofBytes(8));
+
+        assertThatThrownBy(() -> storage.stage(new MockMultipartFile("file", "cover.png", "image/png", PNG)))
+                .isInstanceOf(InvalidFileException.class);
+    }
+
+    private CoverStorageService storage(DataSize maxSize) {
+        return new CoverStorageService(coverBlobRepository, coverCleanupRepository, eventPublisher,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new SimpleMeterRegistry(),
+                uploadDir.toString(), maxSize, Duration.ofMinutes(5));
+    }
+
+    private List<Path> regularFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+}
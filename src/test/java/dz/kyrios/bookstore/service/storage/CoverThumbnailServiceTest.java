@@ -0,0 +1,134 @@
+package dz.kyrios.bookstore.service.storage;
+
+import dz.kyrios.bookstore.service.event.CoverStoredEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class CoverThumbnailServiceTest {
+
+    @TempDir
+    private Path uploadDir;
+
+    private CoverThumbnailService thumbnails;
+
+    @AfterEach
+    public void tearDown() {
+        if (thumbnails != null) {
+            thumbnails.shutdown();
+        }
+    }
+
+    @Test
+    public void testThumbnail_ResizesAndCaches() throws Exception {
+        thumbnails = service(DataSize.ofMegabytes(1));
+        CoverFile original = cover("cover.jpg", "jpeg", "aaaa", 800, 1200);
+
+        CoverFile variant = thumbnails.thumbnail(original, 150);
+
+        assertThat(variant.getETag()).isEqualTo("\"aaaa-w200\"");
+        assertThat(variant.getContentType()).isEqualTo(MediaType.IMAGE_JPEG);
+        BufferedImage image = ImageIO.read(variant.getPath().toFile());
+        assertThat(image.getWidth()).isEqualTo(200);
+        assertThat(image.getHeight()).isEqualTo(300);
+        assertThat(variant.getSize()).isLessThan(original.getSize());
+
+        Instant generated = Files.getLastModifiedTime(variant.getPath()).toInstant();
+        assertThat(thumbnails.thumbnail(original, 200).getPath()).isEqualTo(variant.getPath());
+        assertThat(Files.getLastModifiedTime(variant.getPath()).toInstant()).isEqualTo(generated);
+    }
+
+    @Test
+    public void testThumbnail_ConcurrentRequestsShareOneFile() throws Exception {
+        thumbnails = service(DataSize.ofMegabytes(1));
+        CoverFile original = cover("cover.png", "png", "bbbb", 600, 600);
+
+        List<CompletableFuture<CoverFile>> requests = IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> thumbnails.thumbnail(original, 400)))
+                .toList();
+
+        assertThat(requests).allSatisfy(request ->
+                assertThat(request.get(10, TimeUnit.SECONDS).getETag()).isEqualTo("\"bbbb-w400\""));
+        try (var files = Files.list(uploadDir.resolve("thumbnails"))) {
+            assertThat(files).containsExactly(uploadDir.resolve("thumbnails").resolve("bbbb-w400.png"));
+        }
+    }
+
+    @Test
+    public void testThumbnail_ServesOriginalWhenNoWidthFits() throws Exception {
+        thumbnails = service(DataSize.ofMegabytes(1));
+        CoverFile original = cover("cover.png", "png", "cccc", 600, 600);
+
+        assertThat(thumbnails.thumbnail(original, 1000)).isSameAs(original);
+        assertThat(thumbnails.thumbnail(new CoverFile(original.getPath(), original.getSize(), original.getLastModified(),
+                "\"cccc\"", MediaType.parseMediaType("image/webp")), 200).getETag()).isEqualTo("\"cccc\"");
+    }
+
+    @Test
+    public void testThumbnail_EvictsWhenCacheIsFull() throws Exception {
+        CoverFile first = cover("first.png", "png", "dddd", 400, 400);
+        CoverFile second = cover("second.png", "png", "eeee", 400, 400);
+        // both variants have the same weight, the cache is sized for exactly one of them
+        thumbnails = service(DataSize.ofMegabytes(1));
+        thumbnails.thumbnail(first, 200);
+        long variantKilobytes = thumbnails.cachedKilobytes();
+        thumbnails.shutdown();
+        thumbnails = service(DataSize.ofKilobytes(variantKilobytes));
+
+        thumbnails.thumbnail(second, 200);
+
+        assertThat(thumbnails.cachedKilobytes()).isEqualTo(variantKilobytes);
+        try (var files = Files.list(uploadDir.resolve("thumbnails"))) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testOnCoverStored_PreGeneratesConfiguredWidths() throws Exception {
+        thumbnails = service(DataSize.ofMegabytes(1));
+        CoverFile original = cover("cover.jpg", "jpeg", "ffff", 800, 800);
+
+        thumbnails.onCoverStored(new CoverStoredEvent(new StoredCover(original.getPath(), "ffff", original.getSize(), "image/jpeg", null)));
+
+        Path thumbnailsDir = uploadDir.resolve("thumbnails");
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> {
+            assertThat(thumbnailsDir.resolve("ffff-w200.jpeg")).exists();
+            assertThat(thumbnailsDir.resolve("ffff-w400.jpeg")).exists();
+        });
+    }
+
+    private CoverThumbnailService service(DataSize maxCacheSize) {
+        return new CoverThumbnailService(new SimpleMeterRegistry(), List.of(400, 200), uploadDir.resolve("thumbnails").toString(),
+                maxCacheSize, 2, 16, Duration.ofSeconds(10));
+    }
+
+    private CoverFile cover(String name, String format, String hash, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, (x / 50 + y / 50) * 0x102030 & 0xFFFFFF);
+            }
+        }
+        Path file = uploadDir.resolve(name);
+        ImageIO.write(image, format, file.toFile());
+        return new CoverFile(file, Files.size(file), Files.getLastModifiedTime(file).toInstant(),
+                "\"" + hash + "\"", MediaType.parseMediaType("image/" + format));
+    }
+}